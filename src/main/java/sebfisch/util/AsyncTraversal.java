@@ -0,0 +1,192 @@
+package sebfisch.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * Runs a traversal where each part is processed by an asynchronous computation. At most a given
+ * number of computations run concurrently. Write-back of a part only waits for the computations
+ * started while the part was consumed: it is deferred until they are complete while the traversal
+ * continues, and runs on the traversing thread before an enclosing part is written back. Waiting
+ * for permits or computations uses {@link ForkJoinPool#managedBlock}, so fork-join pools running
+ * the traversal can compensate for the blocked thread.
+ */
+final class AsyncTraversal extends WriteBack {
+
+  private static final int PRUNE_INTERVAL = 1024;
+
+  private final Semaphore permits;
+
+  /** Computations and deferred write-backs in the order they were started. */
+  private final List<Pending> pending = new ArrayList<>();
+
+  /** Sizes of the pending list when the currently consumed parts were entered, innermost first. */
+  private final ArrayDeque<Integer> marks = new ArrayDeque<>();
+
+  /**
+   * Creates a runner for asynchronous traversals.
+   *
+   * @param maxConcurrency maximum number of concurrently running computations
+   */
+  AsyncTraversal(final int maxConcurrency) {
+    if (maxConcurrency < 1) {
+      throw new IllegalArgumentException("maxConcurrency must be positive: " + maxConcurrency);
+    }
+    permits = new Semaphore(maxConcurrency);
+  }
+
+  /** A started computation, with a write-back to run on the traversing thread once complete. */
+  private static final class Pending {
+    private final CompletableFuture<?> future;
+    private final Runnable writeBack;
+
+    Pending(final CompletableFuture<?> future, final Runnable writeBack) {
+      this.future = future;
+      this.writeBack = writeBack;
+    }
+
+    void finish() {
+      future.join();
+      if (writeBack != null) {
+        writeBack.run();
+      }
+    }
+  }
+
+  /**
+   * Traverses the given root and waits until all started computations are complete.
+   *
+   * @param <R> type of the root structure
+   * @param <P> type of traversed parts
+   * @param traversal traversal to run
+   * @param root structured data
+   * @param process function starting an asynchronous computation for a part
+   */
+  <R, P> void run(
+      final Traversal<R, P> traversal,
+      final R root,
+      final Function<P, ? extends CompletionStage<?>> process) {
+    install(
+        () -> {
+          traversal.traverse(root, p -> start(process, p));
+          finish(0);
+        });
+  }
+
+  private <P> void start(final Function<P, ? extends CompletionStage<?>> process, final P part) {
+    acquire();
+    final CompletableFuture<?> future;
+    try {
+      future = process.apply(part).toCompletableFuture();
+    } catch (RuntimeException e) {
+      permits.release();
+      throw e;
+    }
+    add(new Pending(future.whenComplete((result, error) -> permits.release()), null));
+  }
+
+  /** Adds an entry for the innermost entered part, pruning its entries every now and then. */
+  private void add(final Pending entry) {
+    final int from = marks.isEmpty() ? 0 : marks.peek();
+    if ((pending.size() - from) % PRUNE_INTERVAL == PRUNE_INTERVAL - 1) {
+      prune(from);
+    }
+    pending.add(entry);
+  }
+
+  private void acquire() {
+    if (permits.tryAcquire()) {
+      return;
+    }
+    try {
+      ForkJoinPool.managedBlock(
+          new ForkJoinPool.ManagedBlocker() {
+            private boolean acquired;
+
+            @Override
+            public boolean block() throws InterruptedException {
+              if (!acquired) {
+                permits.acquire();
+                acquired = true;
+              }
+              return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+              if (!acquired) {
+                acquired = permits.tryAcquire();
+              }
+              return acquired;
+            }
+          });
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CompletionException(e);
+    }
+  }
+
+  /** Finishes successfully completed entries of the innermost entered part. */
+  private void prune(final int from) {
+    for (final Iterator<Pending> iter = pending.listIterator(from); iter.hasNext(); ) {
+      final Pending entry = iter.next();
+      if (entry.future.isDone() && !entry.future.isCompletedExceptionally()) {
+        iter.remove();
+        if (entry.writeBack != null) {
+          entry.writeBack.run();
+        }
+      }
+    }
+  }
+
+  /** Waits for pending entries starting at the given position and runs their write-backs. */
+  private void finish(final int from) {
+    for (final Pending entry : removeFrom(from)) {
+      entry.finish();
+    }
+  }
+
+  private List<Pending> removeFrom(final int from) {
+    final List<Pending> entries = pending.subList(from, pending.size());
+    final List<Pending> removed = new ArrayList<>(entries);
+    entries.clear();
+    return removed;
+  }
+
+  @Override
+  void beforePart() {
+    marks.push(pending.size());
+  }
+
+  @Override
+  void writeBack(final Runnable action) {
+    final int from = marks.pop();
+    if (pending.size() == from) {
+      super.writeBack(action);
+      return;
+    }
+    final List<Pending> started = removeFrom(from);
+    final CompletableFuture<?> future =
+        started.size() == 1
+            ? started.get(0).future
+            : CompletableFuture.allOf(
+                started.stream().map(entry -> entry.future).toArray(CompletableFuture<?>[]::new));
+    add(
+        new Pending(
+            future,
+            () -> {
+              for (final Pending entry : started) {
+                entry.finish();
+              }
+              super.writeBack(action);
+            }));
+  }
+}
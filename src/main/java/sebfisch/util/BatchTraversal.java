@@ -0,0 +1,95 @@
+package sebfisch.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Traverses many independent roots in parallel. Roots are split into batches of adjacent roots
+ * which are processed by work-stealing tasks. Every worker thread gets its own sink and builds the
+ * consumer chain for it once, which it then applies to all roots of all batches it processes.
+ *
+ * @param <R> type of the root structures
+ * @param <P> type of traversed parts
+ * @param <S> type of sinks consuming parts
+ */
+final class BatchTraversal<R, P, S extends Consumer<P>> {
+
+  private static final int TASKS_PER_THREAD = 4;
+
+  private final Traversal<R, P> traversal;
+  private final Supplier<S> sinks;
+  private final Map<Thread, Worker> workers = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a batch traversal.
+   *
+   * @param traversal traversal applied to every root
+   * @param sinks supplier called once per worker thread
+   */
+  BatchTraversal(final Traversal<R, P> traversal, final Supplier<S> sinks) {
+    this.traversal = traversal;
+    this.sinks = sinks;
+  }
+
+  /**
+   * Traverses all given roots on the given pool.
+   *
+   * @param roots independent roots
+   * @param pool pool running the tasks
+   * @return sinks of all workers that processed roots
+   */
+  List<S> run(final Collection<? extends R> roots, final ForkJoinPool pool) {
+    final long threshold =
+        Math.max(1, roots.size() / ((long) pool.getParallelism() * TASKS_PER_THREAD));
+    pool.invoke(new Batch(roots.spliterator(), threshold));
+    final List<S> result = new ArrayList<>(workers.size());
+    for (final Worker worker : workers.values()) {
+      result.add(worker.sink);
+    }
+    return result;
+  }
+
+  /** Sink of a worker thread together with the consumer chain built for it. */
+  private final class Worker {
+    private final S sink = sinks.get();
+    private final Consumer<R> chain = traversal.prepare(sink);
+  }
+
+  /** Traverses a batch of adjacent roots, splitting off batches for other workers to steal. */
+  private final class Batch extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final Spliterator<? extends R> roots;
+    private final long threshold;
+
+    Batch(final Spliterator<? extends R> roots, final long threshold) {
+      this.roots = roots;
+      this.threshold = threshold;
+    }
+
+    @Override
+    protected void compute() {
+      final List<Batch> forked = new ArrayList<>();
+      Spliterator<? extends R> prefix;
+      while (roots.estimateSize() > threshold && (prefix = roots.trySplit()) != null) {
+        final Batch batch = new Batch(prefix, threshold);
+        batch.fork();
+        forked.add(batch);
+      }
+      final Consumer<R> chain =
+          workers.computeIfAbsent(Thread.currentThread(), thread -> new Worker()).chain;
+      roots.forEachRemaining(chain);
+      for (final Batch batch : forked) {
+        batch.join();
+      }
+    }
+  }
+}
@@ -0,0 +1,145 @@
+package sebfisch.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Reads primitive values in big-endian byte order from a channel. The channel is read in bulk into
+ * a direct buffer, and arrays of values are copied from the buffer in bulk. Not safe for concurrent
+ * use.
+ *
+ * @see BinaryWriter
+ */
+public final class BinaryReader {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final ReadableByteChannel channel;
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).flip();
+
+  /**
+   * Creates a reader for the given channel. The reader may read ahead beyond the values requested
+   * from it.
+   *
+   * @param channel channel to read from, not closed by the reader
+   */
+  public BinaryReader(final ReadableByteChannel channel) {
+    this.channel = channel;
+  }
+
+  /**
+   * Reads a single byte.
+   *
+   * @return next byte
+   * @throws IOException if reading from the channel fails or ends prematurely
+   */
+  public byte getByte() throws IOException {
+    require(Byte.BYTES);
+    return buffer.get();
+  }
+
+  /**
+   * Reads an integer.
+   *
+   * @return next integer
+   * @throws IOException if reading from the channel fails or ends prematurely
+   */
+  public int getInt() throws IOException {
+    require(Integer.BYTES);
+    return buffer.getInt();
+  }
+
+  /**
+   * Reads a double precision number.
+   *
+   * @return next number
+   * @throws IOException if reading from the channel fails or ends prematurely
+   */
+  public double getDouble() throws IOException {
+    require(Double.BYTES);
+    return buffer.getDouble();
+  }
+
+  /**
+   * Reads bytes into a range of an array.
+   *
+   * @param values array to store read bytes
+   * @param from index of the first byte to read
+   * @param to end of range to read, exclusive
+   * @throws IOException if reading from the channel fails or ends prematurely
+   */
+  public void getBytes(final byte[] values, final int from, final int to) throws IOException {
+    for (int index = from; index < to; ) {
+      require(Byte.BYTES);
+      final int count = Math.min(to - index, buffer.remaining());
+      buffer.get(values, index, count);
+      index += count;
+    }
+  }
+
+  /**
+   * Reads characters with two bytes each into a range of an array.
+   *
+   * @param values array to store read characters
+   * @param from index of the first character to read
+   * @param to end of range to read, exclusive
+   * @throws IOException if reading from the channel fails or ends prematurely
+   */
+  public void getChars(final char[] values, final int from, final int to) throws IOException {
+    for (int index = from; index < to; ) {
+      require(Character.BYTES);
+      final int count = Math.min(to - index, buffer.remaining() / Character.BYTES);
+      buffer.asCharBuffer().get(values, index, count);
+      buffer.position(buffer.position() + count * Character.BYTES);
+      index += count;
+    }
+  }
+
+  /**
+   * Reads double precision numbers into a range of an array.
+   *
+   * @param values array to store read numbers
+   * @param from index of the first number to read
+   * @param to end of range to read, exclusive
+   * @throws IOException if reading from the channel fails or ends prematurely
+   */
+  public void getDoubles(final double[] values, final int from, final int to) throws IOException {
+    for (int index = from; index < to; ) {
+      require(Double.BYTES);
+      final int count = Math.min(to - index, buffer.remaining() / Double.BYTES);
+      buffer.asDoubleBuffer().get(values, index, count);
+      buffer.position(buffer.position() + count * Double.BYTES);
+      index += count;
+    }
+  }
+
+  /**
+   * Computes the number of bytes left to read if the channel has a known size, so that sizes read
+   * from headers can be validated before memory is allocated for them.
+   *
+   * @return number of remaining bytes, or -1 if the channel has no known size
+   * @throws IOException if querying the channel fails
+   */
+  public long remaining() throws IOException {
+    if (!(channel instanceof SeekableByteChannel)) {
+      return -1;
+    }
+    final SeekableByteChannel seekable = (SeekableByteChannel) channel;
+    return buffer.remaining() + seekable.size() - seekable.position();
+  }
+
+  private void require(final int bytes) throws IOException {
+    if (buffer.remaining() < bytes) {
+      buffer.compact();
+      while (buffer.position() < bytes) {
+        if (channel.read(buffer) < 0) {
+          throw new EOFException();
+        }
+      }
+      buffer.flip();
+    }
+  }
+}
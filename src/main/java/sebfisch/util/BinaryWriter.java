@@ -0,0 +1,149 @@
+package sebfisch.util;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes primitive values in big-endian byte order to a channel. Values are collected in a direct
+ * buffer which is written to the channel in bulk when it is full or flushed. Not safe for
+ * concurrent use.
+ */
+public final class BinaryWriter implements Flushable {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final WritableByteChannel channel;
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+  /**
+   * Creates a writer for the given channel.
+   *
+   * @param channel channel to write to, not closed by the writer
+   */
+  public BinaryWriter(final WritableByteChannel channel) {
+    this.channel = channel;
+  }
+
+  /**
+   * Writes a single byte.
+   *
+   * @param value byte to write
+   * @return this writer
+   * @throws IOException if writing to the channel fails
+   */
+  public BinaryWriter putByte(final byte value) throws IOException {
+    reserve(Byte.BYTES);
+    buffer.put(value);
+    return this;
+  }
+
+  /**
+   * Writes an integer.
+   *
+   * @param value integer to write
+   * @return this writer
+   * @throws IOException if writing to the channel fails
+   */
+  public BinaryWriter putInt(final int value) throws IOException {
+    reserve(Integer.BYTES);
+    buffer.putInt(value);
+    return this;
+  }
+
+  /**
+   * Writes a double precision number.
+   *
+   * @param value number to write
+   * @return this writer
+   * @throws IOException if writing to the channel fails
+   */
+  public BinaryWriter putDouble(final double value) throws IOException {
+    reserve(Double.BYTES);
+    buffer.putDouble(value);
+    return this;
+  }
+
+  /**
+   * Writes a range of bytes.
+   *
+   * @param values array containing the bytes to write
+   * @param from index of the first byte to write
+   * @param to end of range to write, exclusive
+   * @return this writer
+   * @throws IOException if writing to the channel fails
+   */
+  public BinaryWriter putBytes(final byte[] values, final int from, final int to)
+      throws IOException {
+    for (int index = from; index < to; ) {
+      reserve(Byte.BYTES);
+      final int count = Math.min(to - index, buffer.remaining());
+      buffer.put(values, index, count);
+      index += count;
+    }
+    return this;
+  }
+
+  /**
+   * Writes a range of characters with two bytes each.
+   *
+   * @param values array containing the characters to write
+   * @param from index of the first character to write
+   * @param to end of range to write, exclusive
+   * @return this writer
+   * @throws IOException if writing to the channel fails
+   */
+  public BinaryWriter putChars(final char[] values, final int from, final int to)
+      throws IOException {
+    for (int index = from; index < to; ) {
+      reserve(Character.BYTES);
+      final int count = Math.min(to - index, buffer.remaining() / Character.BYTES);
+      buffer.asCharBuffer().put(values, index, count);
+      buffer.position(buffer.position() + count * Character.BYTES);
+      index += count;
+    }
+    return this;
+  }
+
+  /**
+   * Writes a range of double precision numbers.
+   *
+   * @param values array containing the numbers to write
+   * @param from index of the first number to write
+   * @param to end of range to write, exclusive
+   * @return this writer
+   * @throws IOException if writing to the channel fails
+   */
+  public BinaryWriter putDoubles(final double[] values, final int from, final int to)
+      throws IOException {
+    for (int index = from; index < to; ) {
+      reserve(Double.BYTES);
+      final int count = Math.min(to - index, buffer.remaining() / Double.BYTES);
+      buffer.asDoubleBuffer().put(values, index, count);
+      buffer.position(buffer.position() + count * Double.BYTES);
+      index += count;
+    }
+    return this;
+  }
+
+  /**
+   * Writes all buffered values to the channel.
+   *
+   * @throws IOException if writing to the channel fails
+   */
+  @Override
+  public void flush() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  private void reserve(final int bytes) throws IOException {
+    if (buffer.remaining() < bytes) {
+      flush();
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package sebfisch.util;
+
+import java.util.function.Consumer;
+
+/**
+ * Wraps a traversal to report each run over a root to given metrics.
+ *
+ * @param <R> type of the root structure
+ * @param <P> type of traversed parts
+ */
+final class InstrumentedTraversal<R, P> implements Traversal<R, P> {
+
+  private final Traversal<R, P> traversal;
+  private final String stage;
+  private final TraversalMetrics metrics;
+
+  /**
+   * Creates an instrumented version of the given traversal.
+   *
+   * @param traversal instrumented traversal
+   * @param stage name of the instrumented stage
+   * @param metrics metrics receiving measurements
+   */
+  InstrumentedTraversal(
+      final Traversal<R, P> traversal, final String stage, final TraversalMetrics metrics) {
+    this.traversal = traversal;
+    this.stage = stage;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public Consumer<R> apply(final Consumer<P> cp) {
+    return root -> new Run(cp).measure(root);
+  }
+
+  @Override
+  public long estimateSize(final R root) {
+    return traversal.estimateSize(root);
+  }
+
+  @Override
+  public int characteristics() {
+    return traversal.characteristics();
+  }
+
+  /** Measurements of a single run over a root. */
+  private final class Run extends WriteBack {
+    private final Consumer<P> downstream;
+    private long parts;
+    private long writeBacks;
+    private long downstreamNanos;
+    private boolean inDownstream;
+
+    Run(final Consumer<P> downstream) {
+      this.downstream = downstream;
+    }
+
+    void measure(final R root) {
+      final long start = System.nanoTime();
+      install(() -> traversal.traverse(root, this::emit));
+      metrics.record(stage, parts, writeBacks, System.nanoTime() - start - downstreamNanos);
+    }
+
+    private void emit(final P part) {
+      parts++;
+      final long start = System.nanoTime();
+      inDownstream = true;
+      try {
+        downstream.accept(part);
+      } finally {
+        inDownstream = false;
+        downstreamNanos += System.nanoTime() - start;
+      }
+    }
+
+    @Override
+    void afterWriteBack() {
+      if (!inDownstream) {
+        writeBacks++;
+      }
+    }
+  }
+}
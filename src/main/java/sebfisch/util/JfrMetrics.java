@@ -0,0 +1,46 @@
+package sebfisch.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/** Reports measurements of instrumented traversal stages as Java Flight Recorder events. */
+public class JfrMetrics implements TraversalMetrics {
+
+  @Override
+  public void record(
+      final String stage, final long parts, final long writeBacks, final long nanos) {
+    final StageEvent event = new StageEvent();
+    if (event.shouldCommit()) {
+      event.stage = stage;
+      event.parts = parts;
+      event.writeBacks = writeBacks;
+      event.time = nanos;
+      event.commit();
+    }
+  }
+
+  /** Event for a single run of an instrumented stage over a root. */
+  @Name("sebfisch.util.TraversalStage")
+  @Label("Traversal Stage")
+  @Category("Traversals")
+  @Description("Run of an instrumented traversal stage over a single root")
+  static class StageEvent extends Event {
+    @Label("Stage")
+    String stage;
+
+    @Label("Parts")
+    long parts;
+
+    @Label("Write-backs")
+    long writeBacks;
+
+    @Label("Time")
+    @Description("Time spent up to this stage, excluding downstream consumers")
+    @Timespan
+    long time;
+  }
+}
@@ -0,0 +1,40 @@
+package sebfisch.util;
+
+import java.util.function.Consumer;
+
+/**
+ * Records runs of traversals as {@link TraverseEvent}s. Traversals only refer to this class, so
+ * that they can be compiled against the API of the targeted release, which lacks the supertype of
+ * flight recorder events.
+ */
+final class JfrTraversals {
+
+  private JfrTraversals() {}
+
+  /**
+   * Traverses a root and records the run if enabled and above the threshold.
+   *
+   * @param <R> type of the root structure
+   * @param <P> type of traversed parts
+   * @param traversal traversal to run
+   * @param root structured data
+   * @param partConsumer consumer of parts
+   */
+  static <R, P> void traverse(
+      final Traversal<R, P> traversal, final R root, final Consumer<P> partConsumer) {
+    final TraverseEvent event = new TraverseEvent();
+    if (!event.isEnabled()) {
+      traversal.apply(partConsumer).accept(root);
+      return;
+    }
+    event.begin();
+    traversal
+        .apply(
+            (P p) -> {
+              event.parts++;
+              partConsumer.accept(p);
+            })
+        .accept(root);
+    event.commit();
+  }
+}
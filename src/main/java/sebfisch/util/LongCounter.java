@@ -0,0 +1,23 @@
+package sebfisch.util;
+
+import java.util.function.LongSupplier;
+
+/** Represents a long counter that starts at zero and can be incremented by one repeatedly. */
+public class LongCounter implements LongSupplier {
+  private long count = 0;
+
+  @Override
+  public long getAsLong() {
+    return count;
+  }
+
+  /**
+   * Increments the counter.
+   *
+   * @return this counter, mutated
+   */
+  public LongCounter increment() {
+    count++;
+    return this;
+  }
+}
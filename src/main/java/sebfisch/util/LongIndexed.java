@@ -0,0 +1,42 @@
+package sebfisch.util;
+
+/**
+ * Represents values with an associated long index, for structures with more parts than can be
+ * indexed by an integer.
+ *
+ * @param <T> type of indexed value
+ */
+public class LongIndexed<T> {
+
+  private final long index;
+  private final T value;
+
+  /**
+   * Creates an indexed value.
+   *
+   * @param index the index
+   * @param value the value
+   */
+  public LongIndexed(final long index, final T value) {
+    this.index = index;
+    this.value = value;
+  }
+
+  /**
+   * Provides access to the index.
+   *
+   * @return the index
+   */
+  public long getIndex() {
+    return index;
+  }
+
+  /**
+   * Provides access to the value.
+   *
+   * @return the value
+   */
+  public T getValue() {
+    return value;
+  }
+}
@@ -0,0 +1,193 @@
+package sebfisch.util;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * A traversal that caches the parts of recently traversed roots. Roots are identified by identity
+ * and only weakly referenced, at most a given number of roots is cached, evicting the least
+ * recently traversed root first. Only parts of {@link Spliterator#IMMUTABLE} traversals are
+ * cached, because replayed parts could not be written back. Other traversals run on every call.
+ * Cached parts of roots implementing {@link Versioned} are recomputed when the version of the
+ * root changed, other roots modified after they were traversed need to be invalidated explicitly.
+ * Cached parts are not copied: every traversal replaying them passes the same objects to its
+ * consumer, so mutable parts modified by a consumer are seen modified by later consumers until
+ * their root is invalidated.
+ *
+ * @param <R> type of the root structure
+ * @param <P> type of traversed parts
+ */
+public class Memoized<R, P> implements Traversal<R, P> {
+
+  private final Traversal<R, P> traversal;
+  private final Map<Key<R>, Parts<P>> cache;
+  private final ReferenceQueue<R> collected = new ReferenceQueue<>();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  /**
+   * Creates a memoizing version of the given traversal.
+   *
+   * @param traversal traversal computing parts on cache misses
+   * @param maxRoots maximum number of roots with cached parts
+   */
+  public Memoized(final Traversal<R, P> traversal, final int maxRoots) {
+    this.traversal = traversal;
+    this.cache =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          private static final long serialVersionUID = 1L;
+
+          @Override
+          protected boolean removeEldestEntry(final Map.Entry<Key<R>, Parts<P>> eldest) {
+            return size() > maxRoots;
+          }
+        };
+  }
+
+  /**
+   * Cached parts of a root together with the version of the root they were computed from.
+   *
+   * @param <P> type of cached parts
+   */
+  private static final class Parts<P> {
+    private final List<P> parts;
+    private final long version;
+
+    Parts(final List<P> parts, final long version) {
+      this.parts = parts;
+      this.version = version;
+    }
+  }
+
+  @Override
+  public Consumer<R> apply(final Consumer<P> cp) {
+    if ((traversal.characteristics() & Spliterator.IMMUTABLE) == 0) {
+      return root -> {
+        misses.increment();
+        traversal.traverse(root, cp);
+      };
+    }
+    return root -> {
+      final long version = versionOf(root);
+      final Parts<P> cached = lookup(root);
+      if (cached != null && cached.version == version) {
+        hits.increment();
+        cached.parts.forEach(cp);
+        return;
+      }
+      misses.increment();
+      final List<P> parts = new ArrayList<>();
+      traversal.traverse(
+          root,
+          p -> {
+            parts.add(p);
+            cp.accept(p);
+          });
+      store(root, new Parts<>(parts, version));
+    };
+  }
+
+  private static long versionOf(final Object root) {
+    return root instanceof Versioned ? ((Versioned) root).version() : 0;
+  }
+
+  @Override
+  public long estimateSize(final R root) {
+    return traversal.estimateSize(root);
+  }
+
+  @Override
+  public int characteristics() {
+    return traversal.characteristics();
+  }
+
+  /**
+   * Removes cached parts of the given root.
+   *
+   * @param root structured data
+   */
+  public void invalidate(final R root) {
+    synchronized (cache) {
+      expunge();
+      cache.remove(new Key<>(root, null));
+    }
+  }
+
+  /** Removes all cached parts. */
+  public void invalidateAll() {
+    synchronized (cache) {
+      cache.clear();
+      expunge();
+    }
+  }
+
+  /**
+   * Provides access to the number of traversals that used cached parts.
+   *
+   * @return number of cache hits
+   */
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /**
+   * Provides access to the number of traversals that computed parts.
+   *
+   * @return number of cache misses
+   */
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  private Parts<P> lookup(final R root) {
+    synchronized (cache) {
+      expunge();
+      return cache.get(new Key<>(root, null));
+    }
+  }
+
+  private void store(final R root, final Parts<P> parts) {
+    synchronized (cache) {
+      expunge();
+      cache.put(new Key<>(root, collected), parts);
+    }
+  }
+
+  private void expunge() {
+    for (Object key = collected.poll(); key != null; key = collected.poll()) {
+      cache.remove(key);
+    }
+  }
+
+  /**
+   * Weak reference to a root that is compared by identity.
+   *
+   * @param <R> type of the root structure
+   */
+  static final class Key<R> extends WeakReference<R> {
+    private final int hash;
+
+    Key(final R root, final ReferenceQueue<R> queue) {
+      super(root, queue);
+      hash = System.identityHashCode(root);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(final Object that) {
+      final Object root = get();
+      return this == that || root != null && that instanceof Key && root == ((Key<?>) that).get();
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package sebfisch.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Collects measurements of instrumented traversal stages in memory. Safe for concurrent use. */
+public class MetricsRegistry implements TraversalMetrics {
+
+  private final Map<String, Stage> stages = new ConcurrentHashMap<>();
+
+  @Override
+  public void record(
+      final String stage, final long parts, final long writeBacks, final long nanos) {
+    final Stage stats = stages.computeIfAbsent(stage, name -> new Stage());
+    stats.runs.increment();
+    stats.parts.add(parts);
+    stats.writeBacks.add(writeBacks);
+    stats.nanos.add(nanos);
+  }
+
+  /**
+   * Provides access to the measurements of a stage.
+   *
+   * @param stage name of an instrumented stage
+   * @return measurements recorded for the given stage so far
+   */
+  public Stage stage(final String stage) {
+    return stages.getOrDefault(stage, new Stage());
+  }
+
+  /**
+   * Computes the fraction of parts leaving a stage relative to the parts leaving a stage before it.
+   * For a filter between two instrumented stages this is the selectivity of the filter. If no parts
+   * left the earlier stage, none were removed, and the selectivity is 1.
+   *
+   * @param stage name of an instrumented stage
+   * @param before name of an instrumented stage preceding the other
+   * @return ratio of parts leaving the two stages
+   */
+  public double selectivity(final String stage, final String before) {
+    final long parts = stage(before).getParts();
+    return parts == 0 ? 1 : (double) stage(stage).getParts() / parts;
+  }
+
+  /** Accumulated measurements of an instrumented stage. */
+  public static class Stage {
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder parts = new LongAdder();
+    private final LongAdder writeBacks = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+
+    /**
+     * Provides access to the number of roots that entered the stage.
+     *
+     * @return number of runs
+     */
+    public long getRuns() {
+      return runs.sum();
+    }
+
+    /**
+     * Provides access to the number of parts that left the stage.
+     *
+     * @return number of parts
+     */
+    public long getParts() {
+      return parts.sum();
+    }
+
+    /**
+     * Provides access to the number of parts written back up to the stage.
+     *
+     * @return number of write-backs
+     */
+    public long getWriteBacks() {
+      return writeBacks.sum();
+    }
+
+    /**
+     * Provides access to the time spent up to the stage, excluding downstream consumers.
+     *
+     * @return time in nanoseconds
+     */
+    public long getNanos() {
+      return nanos.sum();
+    }
+  }
+}
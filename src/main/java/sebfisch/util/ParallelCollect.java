@@ -0,0 +1,140 @@
+package sebfisch.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Accumulates nested parts of traversed parts in parallel. Traversed parts are buffered and
+ * processed by fork-join tasks, each accumulating into its own container. Buffered parts are
+ * processed before they are written back, and results are combined in traversal order. The buffer
+ * is allocated with the estimated size of the traversal.
+ *
+ * @param <P> type of traversed parts
+ * @param <Q> type of nested parts
+ * @param <A> type of accumulated results
+ */
+final class ParallelCollect<P, Q, A> extends WriteBack {
+
+  private static final int TASKS_PER_THREAD = 4;
+  private static final int MAX_PRESIZE = 1 << 20;
+
+  private final Traversal<P, Q> nested;
+  private final Supplier<A> supplier;
+  private final BiFunction<A, ? super Q, A> accumulator;
+  private final BinaryOperator<A> combiner;
+
+  private List<P> buffer = new ArrayList<>();
+  private A result;
+  private boolean hasResult;
+  private boolean flushing;
+
+  /**
+   * Creates a parallel accumulation of nested parts.
+   *
+   * @param nested traversal for nested parts of each traversed part
+   * @param supplier function creating an initial result for each task
+   * @param accumulator function combining an intermediate result with a nested part
+   * @param combiner associative function combining results of adjacent tasks
+   */
+  ParallelCollect(
+      final Traversal<P, Q> nested,
+      final Supplier<A> supplier,
+      final BiFunction<A, ? super Q, A> accumulator,
+      final BinaryOperator<A> combiner) {
+    this.nested = nested;
+    this.supplier = supplier;
+    this.accumulator = accumulator;
+    this.combiner = combiner;
+  }
+
+  /**
+   * Accumulates the nested parts of all parts traversed by the given traversal.
+   *
+   * @param <R> type of the root structure
+   * @param traversal traversal for parts processed in parallel
+   * @param root structured data
+   * @return combined result
+   */
+  <R> A run(final Traversal<R, P> traversal, final R root) {
+    final long size = traversal.estimateSize(root);
+    if (size != Long.MAX_VALUE) {
+      buffer = new ArrayList<>((int) Math.min(size, MAX_PRESIZE));
+    }
+    install(
+        () -> {
+          traversal.traverse(root, p -> buffer.add(p));
+          flush();
+        });
+    return hasResult ? result : supplier.get();
+  }
+
+  @Override
+  void beforeWriteBack() {
+    if (!flushing) {
+      flush();
+    }
+  }
+
+  private void flush() {
+    if (buffer.isEmpty()) {
+      return;
+    }
+    final List<P> parts = buffer;
+    buffer = new ArrayList<>();
+    final int threshold =
+        Math.max(1, parts.size() / (ForkJoinPool.getCommonPoolParallelism() * TASKS_PER_THREAD));
+    flushing = true;
+    try {
+      final A segment =
+          ForkJoinPool.commonPool().invoke(new Task(parts, 0, parts.size(), threshold));
+      result = hasResult ? combiner.apply(result, segment) : segment;
+      hasResult = true;
+    } finally {
+      flushing = false;
+    }
+  }
+
+  /** Accumulates the nested parts of a range of buffered parts. */
+  private final class Task extends RecursiveTask<A> {
+    private static final long serialVersionUID = 1L;
+
+    private final List<P> parts;
+    private final int from;
+    private final int to;
+    private final int threshold;
+
+    Task(final List<P> parts, final int from, final int to, final int threshold) {
+      this.parts = parts;
+      this.from = from;
+      this.to = to;
+      this.threshold = threshold;
+    }
+
+    @Override
+    protected A compute() {
+      if (to - from <= threshold) {
+        final class Container {
+          private A value = supplier.get();
+        }
+        final Container container = new Container();
+        final Consumer<P> chain =
+            nested.prepare(q -> container.value = accumulator.apply(container.value, q));
+        for (int index = from; index < to; index++) {
+          chain.accept(parts.get(index));
+        }
+        return container.value;
+      }
+      final int middle = (from + to) >>> 1;
+      final Task left = new Task(parts, from, middle, threshold);
+      left.fork();
+      final A right = new Task(parts, middle, to, threshold).compute();
+      return combiner.apply(left.join(), right);
+    }
+  }
+}
@@ -0,0 +1,175 @@
+package sebfisch.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Indexes nested parts of traversed parts in parallel with long indices. Traversed parts are
+ * buffered and split into segments. A first parallel pass counts the nested parts of each segment,
+ * an exclusive prefix sum of the counts yields the index of the first nested part of each segment,
+ * and a second parallel pass delivers nested parts with their global index. Indices are the same
+ * as in a sequential traversal. Nested parts of {@link java.util.Spliterator#SIZED} traversals are
+ * counted without traversing them, other nested traversals run twice: the counting pass discards
+ * their write-backs, but functions computing nested parts are called in both passes. Buffered
+ * parts are processed before they are written back, and indices continue across buffers.
+ *
+ * @param <P> type of traversed parts
+ * @param <Q> type of nested parts
+ */
+final class ParallelIndexed<P, Q> extends WriteBack {
+
+  private static final int TASKS_PER_THREAD = 4;
+
+  private final Traversal<P, Q> nested;
+  private final Consumer<LongIndexed<Q>> consumer;
+
+  private List<P> buffer = new ArrayList<>();
+  private long offset;
+  private boolean flushing;
+
+  /**
+   * Creates a parallel indexing of nested parts.
+   *
+   * @param nested traversal for nested parts of each traversed part
+   * @param consumer consumer of indexed nested parts, called concurrently
+   */
+  ParallelIndexed(final Traversal<P, Q> nested, final Consumer<LongIndexed<Q>> consumer) {
+    this.nested = nested;
+    this.consumer = consumer;
+  }
+
+  /**
+   * Indexes the nested parts of all parts traversed by the given traversal.
+   *
+   * @param <R> type of the root structure
+   * @param traversal traversal for parts processed in parallel
+   * @param root structured data
+   */
+  <R> void run(final Traversal<R, P> traversal, final R root) {
+    install(
+        () -> {
+          traversal.traverse(root, p -> buffer.add(p));
+          flush();
+        });
+  }
+
+  @Override
+  void beforeWriteBack() {
+    if (!flushing) {
+      flush();
+    }
+  }
+
+  private void flush() {
+    if (buffer.isEmpty()) {
+      return;
+    }
+    final List<P> parts = buffer;
+    buffer = new ArrayList<>();
+    final int tasks = ForkJoinPool.getCommonPoolParallelism() * TASKS_PER_THREAD;
+    final int segmentSize = Math.max(1, (parts.size() + tasks - 1) / tasks);
+    final int segments = (parts.size() + segmentSize - 1) / segmentSize;
+    final long[] counts = new long[segments];
+    flushing = true;
+    try {
+      ForkJoinPool.commonPool()
+          .invoke(
+              new Segments(
+                  0,
+                  segments,
+                  segment ->
+                      counts[segment] =
+                          count(
+                              parts,
+                              segment * segmentSize,
+                              Math.min(parts.size(), (segment + 1) * segmentSize))));
+      final long[] bases = new long[segments];
+      for (int segment = 0; segment < segments; segment++) {
+        bases[segment] = offset;
+        offset += counts[segment];
+      }
+      ForkJoinPool.commonPool()
+          .invoke(
+              new Segments(
+                  0,
+                  segments,
+                  segment ->
+                      deliver(
+                          parts,
+                          segment * segmentSize,
+                          Math.min(parts.size(), (segment + 1) * segmentSize),
+                          bases[segment])));
+    } finally {
+      flushing = false;
+    }
+  }
+
+  private long count(final List<P> parts, final int from, final int to) {
+    if ((nested.characteristics() & Spliterator.SIZED) != 0) {
+      long count = 0;
+      for (int index = from; index < to; index++) {
+        count += nested.estimateSize(parts.get(index));
+      }
+      return count;
+    }
+    final long[] counter = {0};
+    new ReadOnly()
+        .install(
+            () -> {
+              final Consumer<P> chain = nested.prepare(q -> counter[0]++);
+              for (int index = from; index < to; index++) {
+                chain.accept(parts.get(index));
+              }
+            });
+    return counter[0];
+  }
+
+  private void deliver(final List<P> parts, final int from, final int to, final long base) {
+    final long[] next = {base};
+    final Consumer<P> chain = nested.prepare(q -> consumer.accept(new LongIndexed<>(next[0]++, q)));
+    for (int index = from; index < to; index++) {
+      chain.accept(parts.get(index));
+    }
+  }
+
+  /** Discards write-backs of nested parts that are only counted. */
+  private static final class ReadOnly extends WriteBack {
+    @Override
+    void writeBack(final Runnable action) {}
+  }
+
+  /** Runs an action for each segment in a range, splitting the range between tasks. */
+  private static final class Segments extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final int from;
+    private final int to;
+    private final IntConsumer action;
+
+    Segments(final int from, final int to, final IntConsumer action) {
+      this.from = from;
+      this.to = to;
+      this.action = action;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= 1) {
+        if (from < to) {
+          action.accept(from);
+        }
+        return;
+      }
+      final int middle = (from + to) >>> 1;
+      final Segments left = new Segments(from, middle, action);
+      left.fork();
+      new Segments(middle, to, action).compute();
+      left.join();
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package sebfisch.util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * An immutable list supporting updates that share structure with the original. Elements are stored
+ * in chunks at the leaves of a balanced binary tree, so that {@link #with(int, Object)} only copies
+ * the path to the updated element and a single chunk. Mutating methods of {@link List} throw
+ * {@link UnsupportedOperationException}.
+ *
+ * @param <T> type of list elements
+ */
+public final class PersistentList<T> extends AbstractList<T> implements RandomAccess {
+
+  private static final int CHUNK_SIZE = 32;
+
+  private final Object tree;
+  private final int size;
+
+  private PersistentList(final Object tree, final int size) {
+    this.tree = tree;
+    this.size = size;
+  }
+
+  /** Inner node of the tree, the left subtree holds the given number of elements. */
+  private static final class Branch {
+    private final Object left;
+    private final Object right;
+    private final int leftSize;
+
+    Branch(final Object left, final Object right, final int leftSize) {
+      this.left = left;
+      this.right = right;
+      this.leftSize = leftSize;
+    }
+  }
+
+  /**
+   * Creates a persistent list with the elements of the given list. Persistent lists are returned
+   * unchanged, other lists are copied.
+   *
+   * @param <T> type of list elements
+   * @param list list to copy
+   * @return persistent list with the same elements
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> PersistentList<T> copyOf(final List<? extends T> list) {
+    if (list instanceof PersistentList) {
+      return (PersistentList<T>) list;
+    }
+    final Object[] elements = list.toArray();
+    return new PersistentList<>(build(elements, 0, elements.length), elements.length);
+  }
+
+  private static Object build(final Object[] elements, final int from, final int to) {
+    if (to - from <= CHUNK_SIZE) {
+      return Arrays.copyOfRange(elements, from, to);
+    }
+    final int chunks = (to - from + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    final int middle = from + chunks / 2 * CHUNK_SIZE;
+    return new Branch(build(elements, from, middle), build(elements, middle, to), middle - from);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public T get(final int index) {
+    Objects.checkIndex(index, size);
+    Object node = tree;
+    int offset = index;
+    while (node instanceof Branch) {
+      final Branch branch = (Branch) node;
+      if (offset < branch.leftSize) {
+        node = branch.left;
+      } else {
+        offset -= branch.leftSize;
+        node = branch.right;
+      }
+    }
+    return (T) ((Object[]) node)[offset];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Creates a list with the given element at the given index and all other elements of this list.
+   * Only the path to the updated element is copied, the rest of the tree is shared.
+   *
+   * @param index index of the updated element
+   * @param element new element
+   * @return updated list
+   */
+  public PersistentList<T> with(final int index, final T element) {
+    Objects.checkIndex(index, size);
+    return new PersistentList<>(with(tree, index, element), size);
+  }
+
+  private static Object with(final Object node, final int index, final Object element) {
+    if (node instanceof Branch) {
+      final Branch branch = (Branch) node;
+      return index < branch.leftSize
+          ? new Branch(with(branch.left, index, element), branch.right, branch.leftSize)
+          : new Branch(
+              branch.left, with(branch.right, index - branch.leftSize, element), branch.leftSize);
+    }
+    final Object[] chunk = ((Object[]) node).clone();
+    chunk[index] = element;
+    return chunk;
+  }
+}
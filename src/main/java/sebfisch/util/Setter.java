@@ -0,0 +1,153 @@
+package sebfisch.util;
+
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * A Setter can be used to update parts of structured data without mutating it. Updates return a
+ * new root which shares all unchanged substructure with the original root. A part counts as
+ * unchanged if the update function returns the very same instance. Updated lists are {@link
+ * PersistentList}s, so that updating an element of a list costs time logarithmic in its size once
+ * the list is persistent.
+ *
+ * @param <R> type of the root structure
+ * @param <P> type of updated parts
+ */
+public interface Setter<R, P> extends Function<UnaryOperator<P>, UnaryOperator<R>> {
+
+  /**
+   * Creates a setter for a specified type that updates the root of given data.
+   *
+   * @param <T> type of updated data
+   */
+  class For<T> implements Setter<T, T> {
+    @Override
+    public UnaryOperator<T> apply(final UnaryOperator<T> ut) {
+      return ut;
+    }
+  }
+
+  /**
+   * Creates a setter for the elements of a list. Updated lists are {@link PersistentList}s.
+   * Updating an element of a persistent list copies only the path to the element, other lists are
+   * copied once when the first element changes. Unchanged elements are shared with the original
+   * list, and if no element changes, the original list is returned.
+   *
+   * @param <T> type of list elements
+   * @return setter for list elements
+   */
+  static <T> Setter<List<T>, T> elements() {
+    return ut ->
+        list -> {
+          PersistentList<T> result = null;
+          for (int index = 0; index < list.size(); index++) {
+            final T elem = list.get(index);
+            final T newElem = ut.apply(elem);
+            if (newElem != elem) {
+              result = (result == null ? PersistentList.copyOf(list) : result).with(index, newElem);
+            }
+          }
+          return result == null ? list : result;
+        };
+  }
+
+  /**
+   * Creates a setter for the element of a list at the given index. Only the given element is
+   * accessed, and updating an element of a {@link PersistentList} copies only the path to the
+   * element. Lists without an element at the given index are returned unchanged.
+   *
+   * @param <T> type of list elements
+   * @param index index of the updated element
+   * @return setter for a single list element
+   */
+  static <T> Setter<List<T>, T> elementAt(final int index) {
+    return ut ->
+        list -> {
+          if (index < 0 || index >= list.size()) {
+            return list;
+          }
+          final T elem = list.get(index);
+          final T newElem = ut.apply(elem);
+          return newElem == elem ? list : PersistentList.copyOf(list).with(index, newElem);
+        };
+  }
+
+  /**
+   * Computes a new root by applying the given function to all parts of the given root.
+   *
+   * @param root structured data, not mutated
+   * @param fn function computing new parts from old ones
+   * @return new root, or the given root if no part changed
+   */
+  default R over(final R root, final UnaryOperator<P> fn) {
+    return apply(fn).apply(root);
+  }
+
+  /**
+   * Creates a setter for parts computed from the parts of this setter. The given put function is
+   * used to build a new old part from an updated new part. It is only called if the new part
+   * changed.
+   *
+   * @param <Q> type of new parts
+   * @param get function computing a new part from old ones
+   * @param put function building an updated old part from an updated new part
+   * @return new setter for new parts
+   */
+  default <Q> Setter<R, Q> map(final Function<P, Q> get, final BiFunction<P, Q, P> put) {
+    return uq ->
+        apply(
+            p -> {
+              final Q q = get.apply(p);
+              final Q newQ = uq.apply(q);
+              return newQ == q ? p : put.apply(p, newQ);
+            });
+  }
+
+  /**
+   * Flattening version of the map method where each old part contains a list of new parts.
+   *
+   * @param <Q> type of new parts
+   * @param get function accessing the list of new parts
+   * @param put function building an updated old part from an updated list of new parts
+   * @return new setter for list elements
+   */
+  default <Q> Setter<R, Q> flatMap(
+      final Function<P, List<Q>> get, final BiFunction<P, List<Q>, P> put) {
+    return map(get, put).compose(elements());
+  }
+
+  /**
+   * Computes a new setter updating only those parts that satisfy the given predicate.
+   *
+   * @param pred part predicate
+   * @return restricted setter
+   */
+  default Setter<R, P> filter(final Predicate<P> pred) {
+    return up -> apply(p -> pred.test(p) ? up.apply(p) : p);
+  }
+
+  /**
+   * Computes a composed setter updating each of this setter's parts with the given setter.
+   *
+   * @param <Q> type of nested parts
+   * @param setter setter with this setter's parts as roots
+   * @return composed setter
+   */
+  default <Q> Setter<R, Q> compose(final Setter<P, Q> setter) {
+    return uq -> apply(setter.apply(uq));
+  }
+
+  /**
+   * Computes a new setter first updating all parts of this setter and then all parts of the given
+   * setter.
+   *
+   * @param setter another setter
+   * @return combined setter
+   */
+  default Setter<R, P> andAlso(final Setter<R, P> setter) {
+    return up -> r -> setter.apply(up).apply(apply(up).apply(r));
+  }
+}
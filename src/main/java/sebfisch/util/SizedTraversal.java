@@ -0,0 +1,141 @@
+package sebfisch.util;
+
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * A traversal derived by a combinator, carrying a size estimate and characteristics computed from
+ * the traversals it was derived from.
+ *
+ * @param <R> type of the root structure
+ * @param <P> type of traversed parts
+ */
+final class SizedTraversal<R, P> implements Traversal<R, P> {
+
+  /** Marks traversals whose size estimate depends on the root. */
+  static final long DEPENDS_ON_ROOT = -1;
+
+  private final Function<Consumer<P>, Consumer<R>> chain;
+  /** Estimates sizes of roots, only used if the fixed size depends on the root. */
+  private final ToLongFunction<R> size;
+  private final long fixedSize;
+  private final int characteristics;
+
+  /**
+   * Creates a traversal with a size estimate computed from the root.
+   *
+   * @param chain function building the consumer chain of the traversal
+   * @param size function estimating the number of parts of a root
+   * @param characteristics characteristics of the traversal
+   */
+  SizedTraversal(
+      final Function<Consumer<P>, Consumer<R>> chain,
+      final ToLongFunction<R> size,
+      final int characteristics) {
+    this(chain, size, DEPENDS_ON_ROOT, characteristics);
+  }
+
+  /**
+   * Creates a traversal with a size estimate that is the same for all roots.
+   *
+   * @param chain function building the consumer chain of the traversal
+   * @param fixedSize estimated number of parts of every root
+   * @param characteristics characteristics of the traversal
+   */
+  SizedTraversal(
+      final Function<Consumer<P>, Consumer<R>> chain,
+      final long fixedSize,
+      final int characteristics) {
+    this(chain, null, fixedSize, characteristics);
+  }
+
+  private SizedTraversal(
+      final Function<Consumer<P>, Consumer<R>> chain,
+      final ToLongFunction<R> size,
+      final long fixedSize,
+      final int characteristics) {
+    this.chain = chain;
+    this.size = size;
+    this.fixedSize = fixedSize;
+    this.characteristics = characteristics;
+  }
+
+  @Override
+  public Consumer<R> apply(final Consumer<P> cp) {
+    return chain.apply(cp);
+  }
+
+  @Override
+  public long estimateSize(final R root) {
+    return fixedSize == DEPENDS_ON_ROOT ? size.applyAsLong(root) : fixedSize;
+  }
+
+  @Override
+  public int characteristics() {
+    return characteristics;
+  }
+
+  /**
+   * Creates a traversal with the given consumer chain, whose size estimate is computed like that of
+   * the given traversal.
+   *
+   * @param <R> type of the root structure
+   * @param <P> type of traversed parts
+   * @param traversal traversal providing the size estimate
+   * @param chain function building the consumer chain of the traversal
+   * @param characteristics characteristics of the traversal
+   * @return derived traversal
+   */
+  static <R, P> Traversal<R, P> like(
+      final Traversal<R, ?> traversal,
+      final Function<Consumer<P>, Consumer<R>> chain,
+      final int characteristics) {
+    return new SizedTraversal<>(
+        chain, traversal::estimateSize, fixedSize(traversal), characteristics);
+  }
+
+  /**
+   * Computes the size estimate of a traversal that is the same for all roots.
+   *
+   * @param traversal any traversal
+   * @return estimated number of parts or {@link #DEPENDS_ON_ROOT}
+   */
+  static long fixedSize(final Traversal<?, ?> traversal) {
+    if (traversal instanceof SizedTraversal) {
+      return ((SizedTraversal<?, ?>) traversal).fixedSize;
+    }
+    // subclasses of For may traverse any number of parts
+    if (traversal.getClass() == Traversal.For.class) {
+      return 1;
+    }
+    return DEPENDS_ON_ROOT;
+  }
+
+  /**
+   * Multiplies size estimates, where {@link Long#MAX_VALUE} represents unknown sizes.
+   *
+   * @param a first size estimate
+   * @param b second size estimate
+   * @return product or {@link Long#MAX_VALUE} if unknown or too large
+   */
+  static long product(final long a, final long b) {
+    if (a == Long.MAX_VALUE || b == Long.MAX_VALUE) {
+      return Long.MAX_VALUE;
+    }
+    final long high = Math.multiplyHigh(a, b);
+    return high == 0 && a * b >= 0 ? a * b : Long.MAX_VALUE;
+  }
+
+  /**
+   * Adds size estimates, where {@link Long#MAX_VALUE} represents unknown sizes.
+   *
+   * @param a first size estimate
+   * @param b second size estimate
+   * @return sum or {@link Long#MAX_VALUE} if unknown or too large
+   */
+  static long sum(final long a, final long b) {
+    final long sum = a + b;
+    return sum < 0 ? Long.MAX_VALUE : sum;
+  }
+}
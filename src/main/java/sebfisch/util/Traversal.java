@@ -1,11 +1,35 @@
 package sebfisch.util;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.IntFunction;
 import java.util.function.IntPredicate;
+import java.util.function.LongPredicate;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A Traversal can be used to traverse parts of structured data.
@@ -25,30 +49,724 @@ public interface Traversal<R, P> extends Function<Consumer<P>, Consumer<R>> {
     public Consumer<T> apply(final Consumer<T> ct) {
       return ct;
     }
+
+    @Override
+    public long estimateSize(final T root) {
+      return 1;
+    }
+
+    @Override
+    public int characteristics() {
+      return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.IMMUTABLE;
+    }
+  }
+
+  /**
+   * Creates a traversal for the elements of a list computed from the root. Indexed access to lists
+   * supporting {@link RandomAccess} uses positional access instead of counting traversed parts.
+   * Elements implementing {@link Versioned} are written back with {@link List#set} if modified,
+   * which allows to traverse list views computing elements on access. The number of traversed
+   * elements is known from the size of the list, also for indexed access.
+   *
+   * @param <R> type of the root structure
+   * @param <P> type of list elements
+   */
+  class Elements<R, P> implements Traversal<R, P> {
+
+    private final Function<R, List<P>> elements;
+
+    /**
+     * Creates a traversal for the elements of lists computed by the given function.
+     *
+     * @param elements function computing a list of elements from the root
+     */
+    public Elements(final Function<R, List<P>> elements) {
+      this.elements = elements;
+    }
+
+    @Override
+    public Consumer<R> apply(final Consumer<P> cp) {
+      return root -> {
+        final List<P> list = elements.apply(root);
+        if (list instanceof RandomAccess) {
+          for (int index = 0; index < list.size(); index++) {
+            visit(list, index, cp);
+          }
+        } else {
+          for (final ListIterator<P> iter = list.listIterator(); iter.hasNext(); ) {
+            final int index = iter.nextIndex();
+            final P p = iter.next();
+            if (p instanceof Versioned) {
+              WriteBack.consume(
+                  p,
+                  cp,
+                  WriteBack.VERSION,
+                  q -> {
+                    // deferred write-back happens after the iterator moved on
+                    if (iter.nextIndex() == index + 1) {
+                      iter.set(q);
+                    } else {
+                      list.set(index, q);
+                    }
+                    WriteBack.complete();
+                  });
+            } else {
+              cp.accept(p);
+            }
+          }
+        }
+      };
+    }
+
+    @Override
+    public long estimateSize(final R root) {
+      return elements.apply(root).size();
+    }
+
+    @Override
+    public int characteristics() {
+      return Spliterator.ORDERED | Spliterator.SIZED;
+    }
+
+    @Override
+    public Traversal<R, Indexed<P>> indexed() {
+      return new SizedTraversal<R, Indexed<P>>(
+          cip ->
+              root -> {
+                final List<P> list = elements.apply(root);
+                if (list instanceof RandomAccess) {
+                  for (int index = 0; index < list.size(); index++) {
+                    final int i = index;
+                    visit(list, index, p -> cip.accept(new Indexed<>(i, p)));
+                  }
+                } else {
+                  Traversal.super.indexed().apply(cip).accept(root);
+                }
+              },
+          this::estimateSize,
+          characteristics());
+    }
+
+    @Override
+    public Traversal<R, P> onlyAt(final IntPredicate pred) {
+      return new SizedTraversal<R, P>(
+          cp ->
+              root -> {
+                final List<P> list = elements.apply(root);
+                if (list instanceof RandomAccess) {
+                  for (int index = 0; index < list.size(); index++) {
+                    if (pred.test(index)) {
+                      visit(list, index, cp);
+                    }
+                  }
+                } else {
+                  Traversal.super.onlyAt(pred).apply(cp).accept(root);
+                }
+              },
+          this::estimateSize,
+          characteristics() & ~Spliterator.SIZED);
+    }
+
+    @Override
+    public Traversal<R, P> slice(final int from, final int to) {
+      return new SizedTraversal<R, P>(
+          cp ->
+              root -> {
+                final List<P> list = elements.apply(root);
+                if (list instanceof RandomAccess) {
+                  final int end = Math.min(to, list.size());
+                  for (int index = Math.max(0, from); index < end; index++) {
+                    visit(list, index, cp);
+                  }
+                } else {
+                  Traversal.super.slice(from, to).apply(cp).accept(root);
+                }
+              },
+          root -> Math.max(0, Math.min(to, estimateSize(root)) - Math.max(0, from)),
+          characteristics());
+    }
+
+    @Override
+    public Traversal<R, P> onlyAt(final int index) {
+      return slice(index, index + 1);
+    }
+
+    private static <P> void visit(final List<P> list, final int index, final Consumer<P> cp) {
+      final P p = list.get(index);
+      if (p instanceof Versioned) {
+        WriteBack.consume(
+            p,
+            cp,
+            WriteBack.VERSION,
+            q -> {
+              list.set(index, q);
+              WriteBack.complete();
+            });
+      } else {
+        cp.accept(p);
+      }
+    }
   }
 
   /**
-   * Provides access to traversed parts with a {@link Consumer}.
+   * Creates a traversal for recursive data that traverses a root node together with all its
+   * descendants. Nodes are traversed in pre-order by default. Pending children are kept on an
+   * explicit stack or queue on the heap, so deep structures do not exhaust the call stack.
+   * Subtrees can be traversed in parallel by reducing over the children of a node with {@link
+   * #collectParallel(Object, Traversal, Collector)}.
+   *
+   * @param <T> type of nodes
+   */
+  class Recursive<T> implements Traversal<T, T> {
+
+    /** Specifies the order in which nodes are traversed. */
+    public enum Order {
+      /** Nodes are traversed before their children. */
+      PRE_ORDER,
+      /** Nodes are traversed after their children. */
+      POST_ORDER,
+      /** Nodes are traversed level by level. */
+      BREADTH_FIRST
+    }
+
+    private final Function<T, Iterable<T>> children;
+    private final Order order;
+    private final boolean includeRoot;
+
+    /**
+     * Creates a pre-order traversal for the root and its descendants.
+     *
+     * @param children function computing the children of a node
+     */
+    public Recursive(final Function<T, Iterable<T>> children) {
+      this(children, Order.PRE_ORDER, true);
+    }
+
+    private Recursive(
+        final Function<T, Iterable<T>> children, final Order order, final boolean includeRoot) {
+      this.children = children;
+      this.order = order;
+      this.includeRoot = includeRoot;
+    }
+
+    /**
+     * Creates a version of this traversal that traverses nodes in the given order.
+     *
+     * @param newOrder order of traversed nodes
+     * @return new recursive traversal
+     */
+    public Recursive<T> inOrder(final Order newOrder) {
+      return new Recursive<>(children, newOrder, includeRoot);
+    }
+
+    /**
+     * Creates a version of this traversal that does not traverse the root itself.
+     *
+     * @return new recursive traversal for proper descendants
+     */
+    public Recursive<T> descendants() {
+      return new Recursive<>(children, order, false);
+    }
+
+    @Override
+    public Consumer<T> apply(final Consumer<T> ct) {
+      switch (order) {
+        case POST_ORDER:
+          return root -> postOrder(root, ct);
+        case BREADTH_FIRST:
+          return root -> breadthFirst(root, ct);
+        default:
+          return root -> preOrder(root, ct);
+      }
+    }
+
+    private void preOrder(final T root, final Consumer<T> ct) {
+      if (includeRoot) {
+        ct.accept(root);
+      }
+      final Deque<Iterator<T>> stack = new ArrayDeque<>();
+      stack.push(children.apply(root).iterator());
+      while (!stack.isEmpty()) {
+        final Iterator<T> siblings = stack.peek();
+        if (siblings.hasNext()) {
+          final T node = siblings.next();
+          ct.accept(node);
+          stack.push(children.apply(node).iterator());
+        } else {
+          stack.pop();
+        }
+      }
+    }
+
+    private void postOrder(final T root, final Consumer<T> ct) {
+      final Deque<T> nodes = new ArrayDeque<>();
+      final Deque<Iterator<T>> stack = new ArrayDeque<>();
+      nodes.push(root);
+      stack.push(children.apply(root).iterator());
+      while (!stack.isEmpty()) {
+        final Iterator<T> siblings = stack.peek();
+        if (siblings.hasNext()) {
+          final T node = siblings.next();
+          nodes.push(node);
+          stack.push(children.apply(node).iterator());
+        } else {
+          stack.pop();
+          final T node = nodes.pop();
+          if (includeRoot || !stack.isEmpty()) {
+            ct.accept(node);
+          }
+        }
+      }
+    }
+
+    private void breadthFirst(final T root, final Consumer<T> ct) {
+      if (includeRoot) {
+        ct.accept(root);
+      }
+      final Deque<Iterator<T>> queue = new ArrayDeque<>();
+      queue.add(children.apply(root).iterator());
+      while (!queue.isEmpty()) {
+        final Iterator<T> siblings = queue.poll();
+        while (siblings.hasNext()) {
+          final T node = siblings.next();
+          ct.accept(node);
+          queue.add(children.apply(node).iterator());
+        }
+      }
+    }
+  }
+
+  /**
+   * Provides access to traversed parts with a {@link Consumer}. Runs exceeding a threshold are
+   * recorded as flight recorder events if enabled.
    *
    * @param root structured data
    * @param partConsumer consumer of parts
    */
   default void traverse(final R root, final Consumer<P> partConsumer) {
-    apply(partConsumer).accept(root);
+    JfrTraversals.traverse(this, root, partConsumer);
+  }
+
+  /**
+   * Returns the consumer of roots that passes their parts to the given consumer, like {@link
+   * #apply(Consumer)}. Nothing is computed ahead of time, but callers applying the result to many
+   * roots avoid building the consumer chain once per root. Chains built by the methods of this
+   * interface keep no state between roots, so the result may be shared between threads if the
+   * given consumer may be.
+   *
+   * @param partConsumer consumer of parts
+   * @return reusable consumer of roots
+   */
+  default Consumer<R> prepare(final Consumer<P> partConsumer) {
+    return apply(partConsumer);
   }
 
   /**
-   * Provides access to a {@link Stream} of traversed parts.
+   * Traverses the parts of all given roots in order. The consumer chain is built once and applied
+   * to every root on the calling thread.
+   *
+   * @param roots independent structured data
+   * @param partConsumer consumer of the parts of all roots
+   */
+  default void traverseAll(final Iterable<? extends R> roots, final Consumer<P> partConsumer) {
+    final Consumer<R> chain = prepare(partConsumer);
+    for (final R root : roots) {
+      chain.accept(root);
+    }
+  }
+
+  /**
+   * Traverses the parts of all given roots in parallel on the common fork-join pool, see {@link
+   * #traverseAllParallel(Collection, Supplier, ForkJoinPool)}.
+   *
+   * @param <S> type of sinks
+   * @param roots independent structured data
+   * @param sinks supplier of a sink for each worker thread
+   * @return sinks of all workers
+   */
+  default <S extends Consumer<P>> List<S> traverseAllParallel(
+      final Collection<? extends R> roots, final Supplier<S> sinks) {
+    return traverseAllParallel(roots, sinks, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Traverses the parts of all given roots in parallel. Roots are split into batches of adjacent
+   * roots which are processed by work-stealing tasks. Each worker thread obtains its own sink from
+   * the given supplier and builds the consumer chain for it once, so sinks need not be safe for
+   * concurrent use. Roots are traversed in no particular order and must be independent of each
+   * other. Results accumulated by the sinks can be combined after all roots are traversed.
+   *
+   * @param <S> type of sinks
+   * @param roots independent structured data
+   * @param sinks supplier of a sink for each worker thread
+   * @param pool pool of worker threads
+   * @return sinks of all workers, in no particular order
+   */
+  default <S extends Consumer<P>> List<S> traverseAllParallel(
+      final Collection<? extends R> roots, final Supplier<S> sinks, final ForkJoinPool pool) {
+    return new BatchTraversal<>(this, sinks).run(roots, pool);
+  }
+
+  /**
+   * Estimates the number of parts traversed for the given root without traversing it. The estimate
+   * is exact if the characteristics of this traversal include {@link Spliterator#SIZED}. Traversals
+   * derived with the methods of this interface compute estimates from the traversals they are
+   * derived from.
+   *
+   * @param root structured data
+   * @return estimated number of parts, or {@link Long#MAX_VALUE} if unknown
+   */
+  default long estimateSize(final R root) {
+    return Long.MAX_VALUE;
+  }
+
+  /**
+   * Provides characteristics of this traversal as flags defined in {@link Spliterator}. Traversals
+   * are always {@link Spliterator#ORDERED}. {@link Spliterator#SIZED} traversals have exact size
+   * estimates, and {@link Spliterator#IMMUTABLE} traversals never write back parts.
+   *
+   * @return characteristics of this traversal
+   */
+  default int characteristics() {
+    return Spliterator.ORDERED;
+  }
+
+  /**
+   * Provides access to a {@link Stream} of traversed parts. If the size of the traversal is
+   * estimated, parts are collected in a list allocated with sufficient capacity.
    *
    * @param root structured data
    * @return stream of traversed parts
    */
   default Stream<P> partsOf(final R root) {
+    if (estimateSize(root) != Long.MAX_VALUE) {
+      return StreamSupport.stream(
+          Spliterators.spliterator(toList(root), characteristics()), false);
+    }
     final Stream.Builder<P> sb = Stream.builder();
     traverse(root, sb);
     return sb.build();
   }
 
+  /**
+   * Combines all traversed parts from left to right using the given accumulator.
+   *
+   * @param <A> type of the result
+   * @param root structured data
+   * @param identity initial result
+   * @param accumulator function combining an intermediate result with a part
+   * @return accumulated result
+   */
+  default <A> A fold(
+      final R root, final A identity, final BiFunction<A, ? super P, A> accumulator) {
+    final class Result {
+      private A value = identity;
+    }
+    final Result result = new Result();
+    traverse(root, p -> result.value = accumulator.apply(result.value, p));
+    return result.value;
+  }
+
+  /**
+   * Counts traversed parts. The root is traversed, so write-backs and instrumentation take place as
+   * for any other run. The number of parts of {@link Spliterator#SIZED} traversals is also known
+   * from {@link #estimateSize(Object)} without traversing.
+   *
+   * @param root structured data
+   * @return number of traversed parts
+   */
+  default long count(final R root) {
+    final long[] count = {0};
+    traverse(root, p -> count[0]++);
+    return count[0];
+  }
+
+  /**
+   * Sums up values computed from traversed parts.
+   *
+   * @param root structured data
+   * @param value function computing a value for each part
+   * @return sum of computed values
+   */
+  default double sumDouble(final R root, final ToDoubleFunction<? super P> value) {
+    final double[] sum = {0};
+    traverse(root, p -> sum[0] += value.applyAsDouble(p));
+    return sum[0];
+  }
+
+  /**
+   * Accumulates traversed parts into a mutable container provided by the given {@link Collector}.
+   *
+   * @param <A> type of the mutable container
+   * @param <T> type of the result
+   * @param root structured data
+   * @param collector collector accumulating parts
+   * @return collected result
+   */
+  default <A, T> T collect(final R root, final Collector<? super P, A, T> collector) {
+    final A container = collector.supplier().get();
+    final BiConsumer<A, ? super P> accumulator = collector.accumulator();
+    traverse(root, p -> accumulator.accept(container, p));
+    return collector.finisher().apply(container);
+  }
+
+  /**
+   * Collects traversed parts in a list allocated with the estimated size.
+   *
+   * @param root structured data
+   * @return mutable list of traversed parts
+   */
+  default List<P> toList(final R root) {
+    final List<P> parts = new ArrayList<>(initialCapacity(root));
+    traverse(root, parts::add);
+    return parts;
+  }
+
+  /**
+   * Computes the capacity of a container for the parts of the given root. Exact sizes are used
+   * as is, inexact estimates are limited to avoid allocating large containers for few parts.
+   *
+   * @param root structured data
+   * @return initial capacity for traversed parts
+   */
+  private int initialCapacity(final R root) {
+    final long size = estimateSize(root);
+    if (size == Long.MAX_VALUE) {
+      return 10;
+    }
+    final boolean exact = (characteristics() & Spliterator.SIZED) != 0;
+    return (int) Math.min(size, exact ? Integer.MAX_VALUE - 8 : 1 << 16);
+  }
+
+  /**
+   * Collects traversed parts in an array. Parts are collected in a list allocated with the
+   * estimated size first.
+   *
+   * @param <A> type of array elements
+   * @param root structured data
+   * @param generator function allocating an array of the given length
+   * @return array of traversed parts
+   */
+  default <A> A[] toArray(final R root, final IntFunction<A[]> generator) {
+    final List<P> parts = toList(root);
+    return parts.toArray(generator.apply(parts.size()));
+  }
+
+  /**
+   * Accumulates traversed parts in parallel, see {@link #collectParallel(Object, Traversal,
+   * Collector)}. This traversal itself runs sequentially, and all its parts up to the next
+   * write-back are buffered before they are split between tasks, so only accumulating parts runs
+   * in parallel.
+   *
+   * @param <A> type of the mutable containers
+   * @param <T> type of the result
+   * @param root structured data
+   * @param collector collector with an associative combiner
+   * @return collected result
+   */
+  default <A, T> T collectParallel(final R root, final Collector<? super P, A, T> collector) {
+    return collectParallel(root, new For<P>(), collector);
+  }
+
+  /**
+   * Accumulates nested parts of traversed parts in parallel. Parts of this traversal are split
+   * between fork-join tasks which traverse nested parts with the given traversal and accumulate
+   * them into separate containers. Containers are combined in traversal order, so the combiner
+   * needs to be associative but not commutative. Parts of this traversal are processed before they
+   * are written back.
+   *
+   * <p>Splitting only happens at the boundary between this traversal and the nested one: this
+   * traversal runs sequentially and buffers all its parts up to the next write-back, and each
+   * nested traversal runs sequentially in a single task.
+   *
+   * @param <Q> type of nested parts
+   * @param <A> type of the mutable containers
+   * @param <T> type of the result
+   * @param root structured data
+   * @param nested traversal for nested parts of each part, run concurrently for different parts
+   * @param collector collector with an associative combiner
+   * @return collected result
+   */
+  default <Q, A, T> T collectParallel(
+      final R root, final Traversal<P, Q> nested, final Collector<? super Q, A, T> collector) {
+    final BiConsumer<A, ? super Q> accumulator = collector.accumulator();
+    final A container =
+        new ParallelCollect<P, Q, A>(
+                nested,
+                collector.supplier(),
+                (a, q) -> {
+                  accumulator.accept(a, q);
+                  return a;
+                },
+                collector.combiner())
+            .run(this, root);
+    return collector.finisher().apply(container);
+  }
+
+  /**
+   * Reduces traversed parts in parallel, see {@link #reduceParallel(Object, Traversal, Object,
+   * BiFunction, BinaryOperator)}. This traversal itself runs sequentially, and all its parts up to
+   * the next write-back are buffered before they are split between tasks, so only reducing parts
+   * runs in parallel.
+   *
+   * @param <U> type of the result
+   * @param root structured data
+   * @param identity identity of the combiner
+   * @param accumulator function combining an intermediate result with a part
+   * @param combiner associative function combining intermediate results
+   * @return reduced result
+   */
+  default <U> U reduceParallel(
+      final R root,
+      final U identity,
+      final BiFunction<U, ? super P, U> accumulator,
+      final BinaryOperator<U> combiner) {
+    return reduceParallel(root, new For<P>(), identity, accumulator, combiner);
+  }
+
+  /**
+   * Reduces nested parts of traversed parts in parallel. Parts of this traversal are split between
+   * fork-join tasks which traverse nested parts with the given traversal and reduce them starting
+   * with the given identity. Results of tasks are combined in traversal order.
+   *
+   * <p>Splitting only happens at the boundary between this traversal and the nested one: this
+   * traversal runs sequentially and buffers all its parts up to the next write-back, and each
+   * nested traversal runs sequentially in a single task.
+   *
+   * @param <Q> type of nested parts
+   * @param <U> type of the result
+   * @param root structured data
+   * @param nested traversal for nested parts of each part, run concurrently for different parts
+   * @param identity identity of the combiner
+   * @param accumulator function combining an intermediate result with a nested part
+   * @param combiner associative function combining intermediate results
+   * @return reduced result
+   */
+  default <Q, U> U reduceParallel(
+      final R root,
+      final Traversal<P, Q> nested,
+      final U identity,
+      final BiFunction<U, ? super Q, U> accumulator,
+      final BinaryOperator<U> combiner) {
+    return new ParallelCollect<P, Q, U>(nested, () -> identity, accumulator, combiner)
+        .run(this, root);
+  }
+
+  /**
+   * Traverses parts with their index in parallel, see {@link #traverseIndexedParallel(Object,
+   * Traversal, Consumer)}.
+   *
+   * @param root structured data
+   * @param consumer consumer of indexed parts, called concurrently
+   * @throws ArithmeticException when traversing more than {@link Integer#MAX_VALUE} + 1 parts
+   */
+  default void traverseIndexedParallel(final R root, final Consumer<Indexed<P>> consumer) {
+    traverseIndexedParallel(root, new For<P>(), consumer);
+  }
+
+  /**
+   * Traverses nested parts of traversed parts with their index in parallel. Indices are the same
+   * as those of {@code compose(nested).indexed()}. Parts of this traversal are split between
+   * fork-join tasks which first count the nested parts of their parts. An exclusive prefix sum of
+   * these counts determines the index of the first nested part of each task, before the tasks
+   * traverse nested parts with their index. Nested traversals that are not {@link
+   * Spliterator#SIZED} hence run twice, the first time without writing back parts. Parts of this
+   * traversal are processed before they are written back. Restrictions like {@link
+   * #onlyAt(IntPredicate)} can be applied by testing the index in the given consumer.
+   *
+   * @param <Q> type of nested parts
+   * @param root structured data
+   * @param nested traversal for nested parts of each part, run concurrently for different parts
+   * @param consumer consumer of indexed nested parts, called concurrently
+   * @throws ArithmeticException when traversing more than {@link Integer#MAX_VALUE} + 1 parts
+   */
+  default <Q> void traverseIndexedParallel(
+      final R root, final Traversal<P, Q> nested, final Consumer<Indexed<Q>> consumer) {
+    traverseLongIndexedParallel(
+        root,
+        nested,
+        indexed ->
+            consumer.accept(
+                new Indexed<>(Math.toIntExact(indexed.getIndex()), indexed.getValue())));
+  }
+
+  /**
+   * Traverses parts with their long index in parallel, see {@link
+   * #traverseLongIndexedParallel(Object, Traversal, Consumer)}.
+   *
+   * @param root structured data
+   * @param consumer consumer of indexed parts, called concurrently
+   */
+  default void traverseLongIndexedParallel(
+      final R root, final Consumer<LongIndexed<P>> consumer) {
+    traverseLongIndexedParallel(root, new For<P>(), consumer);
+  }
+
+  /**
+   * Traverses nested parts of traversed parts with their long index in parallel, like {@link
+   * #traverseIndexedParallel(Object, Traversal, Consumer)} but with indices of {@code
+   * compose(nested).longIndexed()}.
+   *
+   * @param <Q> type of nested parts
+   * @param root structured data
+   * @param nested traversal for nested parts of each part, run concurrently for different parts
+   * @param consumer consumer of indexed nested parts, called concurrently
+   */
+  default <Q> void traverseLongIndexedParallel(
+      final R root, final Traversal<P, Q> nested, final Consumer<LongIndexed<Q>> consumer) {
+    new ParallelIndexed<>(nested, consumer).run(this, root);
+  }
+
+  /**
+   * Provides access to traversed parts with a {@link Flow.Publisher}. Each subscription runs a
+   * separate traversal on the given executor which blocks while the subscriber has not requested
+   * more parts. Slow subscribers hence occupy a thread of the executor, which should therefore not
+   * be shared with unrelated work. Cancelling a subscription stops the traversal without writing
+   * back parts.
+   *
+   * @param root structured data
+   * @param executor executor running one traversal per subscription
+   * @return publisher of traversed parts
+   */
+  default Flow.Publisher<P> publisherOf(final R root, final Executor executor) {
+    return new TraversalPublisher<>(this, root, executor);
+  }
+
+  /**
+   * Processes traversed parts with asynchronous computations on the common fork-join pool without
+   * limiting the number of concurrently running computations. The pool compensates for the
+   * traversal waiting for computations before writing back parts.
+   *
+   * @param root structured data
+   * @param process function starting an asynchronous computation for a part
+   * @return future completed when all computations are complete and parts are written back
+   */
+  default CompletableFuture<Void> traverseAsync(
+      final R root, final Function<P, ? extends CompletionStage<?>> process) {
+    return traverseAsync(root, process, ForkJoinPool.commonPool(), Integer.MAX_VALUE);
+  }
+
+  /**
+   * Processes traversed parts with asynchronous computations. The traversal itself runs on the
+   * given executor and waits there while the maximum number of computations is running, using
+   * managed blocking if the executor is a fork-join pool. Parts are written back only after all
+   * computations started for them are complete, while the traversal continues with other parts.
+   *
+   * @param root structured data
+   * @param process function starting an asynchronous computation for a part
+   * @param executor executor running the traversal, may create a thread per task
+   * @param maxConcurrency maximum number of concurrently running computations
+   * @return future completed when all computations are complete and parts are written back
+   */
+  default CompletableFuture<Void> traverseAsync(
+      final R root,
+      final Function<P, ? extends CompletionStage<?>> process,
+      final Executor executor,
+      final int maxConcurrency) {
+    final AsyncTraversal async = new AsyncTraversal(maxConcurrency);
+    return CompletableFuture.runAsync(() -> async.run(this, root, process), executor);
+  }
+
   /**
    * Applies the given function to each part of the traversal to create a new traversal traversing
    * the results.
@@ -58,12 +776,14 @@ public interface Traversal<R, P> extends Function<Consumer<P>, Consumer<R>> {
    * @return new traversal for new parts
    */
   default <Q> Traversal<R, Q> map(final Function<P, Q> get) {
-    return cq -> apply(p -> cq.accept(get.apply(p)));
+    return SizedTraversal.like(
+        this, (Consumer<Q> cq) -> apply(p -> cq.accept(get.apply(p))), characteristics());
   }
 
   /**
    * This variant of the map method has an additional synchronizing argument that can be used to
-   * update the original part based on a mutated new part.
+   * update the original part based on a mutated new part. New parts implementing {@link Versioned}
+   * are only written back if their version changed.
    *
    * @param <Q> type of new parts
    * @param get function computing a new part from old ones
@@ -71,13 +791,44 @@ public interface Traversal<R, P> extends Function<Consumer<P>, Consumer<R>> {
    * @return new traversal for synchronized new parts
    */
   default <Q> Traversal<R, Q> map(final Function<P, Q> get, final BiConsumer<P, Q> put) {
-    return cq ->
-        apply(
-            p -> {
-              final Q q = get.apply(p);
-              cq.accept(q);
-              put.accept(p, q);
-            });
+    return SizedTraversal.like(
+        this,
+        (Consumer<Q> cq) ->
+            apply(
+                p -> {
+                  final Q q = get.apply(p);
+                  WriteBack.consume(
+                      q,
+                      cq,
+                      q instanceof Versioned ? WriteBack.VERSION : null,
+                      changed -> writeBack(put, p, changed));
+                }),
+        characteristics() & ~Spliterator.IMMUTABLE);
+  }
+
+  /**
+   * This variant of the map method only writes back new parts whose version changed. Versions are
+   * computed by the given function, for example by combining the versions of contained parts.
+   *
+   * @param <Q> type of new parts
+   * @param get function computing a new part from old ones
+   * @param put bi-consumer updating the old part based on a mutated new part
+   * @param version function computing a version that changes with every modification
+   * @return new traversal for synchronized new parts
+   */
+  default <Q> Traversal<R, Q> map(
+      final Function<P, Q> get, final BiConsumer<P, Q> put, final ToLongFunction<Q> version) {
+    return SizedTraversal.like(
+        this,
+        (Consumer<Q> cq) ->
+            apply(
+                p -> WriteBack.consume(get.apply(p), cq, version, q -> writeBack(put, p, q))),
+        characteristics() & ~Spliterator.IMMUTABLE);
+  }
+
+  private static <P, Q> void writeBack(final BiConsumer<P, Q> put, final P p, final Q q) {
+    put.accept(p, q);
+    WriteBack.complete();
   }
 
   /**
@@ -89,7 +840,61 @@ public interface Traversal<R, P> extends Function<Consumer<P>, Consumer<R>> {
    * @return new traversal for new parts
    */
   default <Q> Traversal<R, Q> flatMap(final Function<P, Iterable<Q>> get) {
-    return cq -> apply(p -> get.apply(p).forEach(cq));
+    return mapMulti((p, cq) -> get.apply(p).forEach(cq));
+  }
+
+  /**
+   * Flattening version of the map method where new parts are pushed to a consumer as they are
+   * computed, without collecting them first.
+   *
+   * @param <Q> type of new parts
+   * @param emit bi-consumer passing new parts computed from an old part to the given consumer
+   * @return new traversal for new parts
+   */
+  default <Q> Traversal<R, Q> mapMulti(final BiConsumer<P, Consumer<Q>> emit) {
+    return new SizedTraversal<R, Q>(
+        cq -> apply(p -> emit.accept(p, cq)),
+        Long.MAX_VALUE,
+        characteristics() & ~Spliterator.SIZED);
+  }
+
+  /**
+   * Flattening version of the map method where new parts are produced by an {@link Iterator}.
+   *
+   * @param <Q> type of new parts
+   * @param get function computing an iterator of new parts from old ones
+   * @return new traversal for new parts
+   */
+  default <Q> Traversal<R, Q> flatMapIterator(final Function<P, Iterator<Q>> get) {
+    return mapMulti((p, cq) -> get.apply(p).forEachRemaining(cq));
+  }
+
+  /**
+   * Flattening version of the map method where new parts are produced by a {@link Spliterator}.
+   *
+   * @param <Q> type of new parts
+   * @param get function computing a spliterator of new parts from old ones
+   * @return new traversal for new parts
+   */
+  default <Q> Traversal<R, Q> flatMapSpliterator(final Function<P, Spliterator<Q>> get) {
+    return mapMulti((p, cq) -> get.apply(p).forEachRemaining(cq));
+  }
+
+  /**
+   * Flattening version of the map method where new parts are produced by a {@link Stream}. Each
+   * stream is consumed sequentially and closed afterwards.
+   *
+   * @param <Q> type of new parts
+   * @param get function computing a stream of new parts from old ones
+   * @return new traversal for new parts
+   */
+  default <Q> Traversal<R, Q> flatMapStream(final Function<P, Stream<Q>> get) {
+    return mapMulti(
+        (p, cq) -> {
+          try (Stream<Q> qs = get.apply(p)) {
+            qs.sequential().forEach(cq);
+          }
+        });
   }
 
   /**
@@ -99,13 +904,16 @@ public interface Traversal<R, P> extends Function<Consumer<P>, Consumer<R>> {
    * @return restricted traversal
    */
   default Traversal<R, P> filter(final Predicate<P> pred) {
-    return cp ->
-        apply(
-            p -> {
-              if (pred.test(p)) {
-                cp.accept(p);
-              }
-            });
+    return SizedTraversal.like(
+        this,
+        (Consumer<P> cp) ->
+            apply(
+                p -> {
+                  if (pred.test(p)) {
+                    cp.accept(p);
+                  }
+                }),
+        characteristics() & ~Spliterator.SIZED);
   }
 
   /**
@@ -117,7 +925,23 @@ public interface Traversal<R, P> extends Function<Consumer<P>, Consumer<R>> {
    * @return composed traversal
    */
   default <Q> Traversal<R, Q> compose(final Traversal<P, Q> traversal) {
-    return cq -> apply(traversal.apply(cq));
+    final Function<Consumer<Q>, Consumer<R>> chain = cq -> apply(traversal.apply(cq));
+    final long nestedSize = SizedTraversal.fixedSize(traversal);
+    if (nestedSize == SizedTraversal.DEPENDS_ON_ROOT) {
+      return new SizedTraversal<>(
+          chain,
+          Long.MAX_VALUE,
+          characteristics() & traversal.characteristics() & ~Spliterator.SIZED);
+    }
+    final long fixedSize = SizedTraversal.fixedSize(this);
+    final int characteristics = characteristics() & traversal.characteristics();
+    return fixedSize == SizedTraversal.DEPENDS_ON_ROOT
+        ? new SizedTraversal<>(
+            chain,
+            root -> SizedTraversal.product(estimateSize(root), nestedSize),
+            characteristics)
+        : new SizedTraversal<>(
+            chain, SizedTraversal.product(fixedSize, nestedSize), characteristics);
   }
 
   /**
@@ -128,25 +952,61 @@ public interface Traversal<R, P> extends Function<Consumer<P>, Consumer<R>> {
    * @return combined traversal
    */
   default Traversal<R, P> andAlso(final Traversal<R, P> traversal) {
-    return cp -> apply(cp).andThen(traversal.apply(cp));
+    final Function<Consumer<P>, Consumer<R>> chain = cp -> apply(cp).andThen(traversal.apply(cp));
+    final long fixedSize = SizedTraversal.fixedSize(this);
+    final long otherSize = SizedTraversal.fixedSize(traversal);
+    final int characteristics = characteristics() & traversal.characteristics();
+    return fixedSize == SizedTraversal.DEPENDS_ON_ROOT
+            || otherSize == SizedTraversal.DEPENDS_ON_ROOT
+        ? new SizedTraversal<>(
+            chain,
+            root -> SizedTraversal.sum(estimateSize(root), traversal.estimateSize(root)),
+            characteristics)
+        : new SizedTraversal<>(chain, SizedTraversal.sum(fixedSize, otherSize), characteristics);
   }
 
   /**
-   * Creates a new traversal where parts have an associated index.
+   * Creates a new traversal where parts have an associated index. Integer indices suffice for
+   * parts of lists and character sequences, {@link #longIndexed()} indexes more parts.
    *
    * @return new traversal for indexed parts
+   * @throws ArithmeticException when traversing more than {@link Integer#MAX_VALUE} + 1 parts
    */
   default Traversal<R, Indexed<P>> indexed() {
-    return cip ->
-        s -> {
-          final Counter counter = new Counter();
-          final Consumer<P> cp =
-              p -> {
-                cip.accept(new Indexed(counter.getAsInt(), p));
-                counter.increment();
-              };
-          apply(cp).accept(s);
-        };
+    return SizedTraversal.like(
+        this,
+        (Consumer<Indexed<P>> cip) ->
+            s -> {
+              final LongCounter counter = new LongCounter();
+              final Consumer<P> cp =
+                  p -> {
+                    cip.accept(new Indexed<>(Math.toIntExact(counter.getAsLong()), p));
+                    counter.increment();
+                  };
+              apply(cp).accept(s);
+            },
+        characteristics());
+  }
+
+  /**
+   * Creates a new traversal where parts have an associated long index.
+   *
+   * @return new traversal for indexed parts
+   */
+  default Traversal<R, LongIndexed<P>> longIndexed() {
+    return SizedTraversal.like(
+        this,
+        (Consumer<LongIndexed<P>> cip) ->
+            s -> {
+              final LongCounter counter = new LongCounter();
+              final Consumer<P> cp =
+                  p -> {
+                    cip.accept(new LongIndexed<>(counter.getAsLong(), p));
+                    counter.increment();
+                  };
+              apply(cp).accept(s);
+            },
+        characteristics());
   }
 
   /**
@@ -159,6 +1019,46 @@ public interface Traversal<R, P> extends Function<Consumer<P>, Consumer<R>> {
     return indexed().filter(ip -> pred.test(ip.getIndex())).map(Indexed::getValue);
   }
 
+  /**
+   * Creates a traversal for those parts that have a valid long index according to the given
+   * predicate.
+   *
+   * @param pred predicate on long indices
+   * @return new traversal restricted to valid indices
+   */
+  default Traversal<R, P> onlyAtLong(final LongPredicate pred) {
+    return longIndexed().filter(ip -> pred.test(ip.getIndex())).map(LongIndexed::getValue);
+  }
+
+  /**
+   * Creates a traversal restricted to parts with indices in the given range. Parts outside the
+   * range are still traversed by this default implementation but not passed on. Traversals that
+   * know their parts, like {@link Elements}, skip them instead.
+   *
+   * @param from index of the first traversed part, inclusive
+   * @param to index after the last traversed part, exclusive
+   * @return new traversal restricted to the given range
+   */
+  default Traversal<R, P> slice(final int from, final int to) {
+    final long range = Math.max(0, (long) to - Math.max(0, from));
+    return new SizedTraversal<R, P>(
+        cp ->
+            root -> {
+              final LongCounter counter = new LongCounter();
+              apply(
+                      p -> {
+                        final long index = counter.getAsLong();
+                        if (from <= index && index < to) {
+                          cp.accept(p);
+                        }
+                        counter.increment();
+                      })
+                  .accept(root);
+            },
+        root -> Math.min(range, estimateSize(root)),
+        characteristics() & ~Spliterator.SIZED);
+  }
+
   /**
    * Creates a traversal restricted to the part with the given index.
    *
@@ -178,4 +1078,68 @@ public interface Traversal<R, P> extends Function<Consumer<P>, Consumer<R>> {
   default Traversal<R, P> exceptAt(final int index) {
     return onlyAt(i -> i != index);
   }
+
+  /**
+   * Creates a traversal reporting modified parts with their index to the given consumer. Parts
+   * implementing {@link Versioned} are reported if their version changed while they were consumed,
+   * other parts are always reported, like parts written back by {@link #map(Function, BiConsumer)}.
+   * Parts are reported after they were consumed and before enclosing traversals write them back,
+   * so that only changes need to be shipped to copies of the traversed structure.
+   *
+   * @param changes consumer of modified parts with their index, called by the traversing thread
+   * @return new traversal reporting modified parts
+   */
+  default Traversal<R, P> recordChanges(final Consumer<? super LongIndexed<P>> changes) {
+    return SizedTraversal.like(
+        this,
+        (Consumer<P> cp) ->
+            root -> {
+              final LongCounter counter = new LongCounter();
+              apply(
+                      p -> {
+                        final long index = counter.getAsLong();
+                        counter.increment();
+                        WriteBack.consume(
+                            p,
+                            cp,
+                            p instanceof Versioned ? WriteBack.VERSION : null,
+                            changed -> changes.accept(new LongIndexed<>(index, changed)));
+                      })
+                  .accept(root);
+            },
+        characteristics());
+  }
+
+  /**
+   * Creates a traversal reporting each run over a root to the given metrics. Instrumenting
+   * consecutive stages of a traversal allows to compare their measurements. If the metrics are
+   * disabled, this traversal is returned unchanged.
+   *
+   * @param stage name of the instrumented stage
+   * @param metrics metrics receiving measurements
+   * @return instrumented traversal
+   */
+  default Traversal<R, P> instrumented(final String stage, final TraversalMetrics metrics) {
+    return metrics.isEnabled() ? new InstrumentedTraversal<>(this, stage, metrics) : this;
+  }
+
+  /**
+   * Creates a traversal caching the parts of up to 256 recently traversed roots, see {@link
+   * Memoized}.
+   *
+   * @return memoizing traversal
+   */
+  default Memoized<R, P> memoized() {
+    return memoized(256);
+  }
+
+  /**
+   * Creates a traversal caching the parts of recently traversed roots, see {@link Memoized}.
+   *
+   * @param maxRoots maximum number of roots with cached parts
+   * @return memoizing traversal
+   */
+  default Memoized<R, P> memoized(final int maxRoots) {
+    return new Memoized<>(this, maxRoots);
+  }
 }
@@ -0,0 +1,46 @@
+package sebfisch.util;
+
+/**
+ * Receives measurements of instrumented traversal stages, see {@link Traversal#instrumented}. Each
+ * run of a stage over a single root is recorded once, after the run is complete.
+ */
+public interface TraversalMetrics {
+
+  /**
+   * Records a run of an instrumented stage over a single root.
+   *
+   * @param stage name of the instrumented stage
+   * @param parts number of parts that left the stage
+   * @param writeBacks number of parts written back up to this stage
+   * @param nanos time spent up to this stage, excluding downstream consumers
+   */
+  void record(String stage, long parts, long writeBacks, long nanos);
+
+  /**
+   * Specifies whether measurements should be taken. Traversals instrumented with disabled metrics
+   * are not instrumented at all.
+   *
+   * @return true if measurements should be recorded
+   */
+  default boolean isEnabled() {
+    return true;
+  }
+
+  /**
+   * Provides metrics that disable instrumentation.
+   *
+   * @return disabled metrics
+   */
+  static TraversalMetrics disabled() {
+    return new TraversalMetrics() {
+      @Override
+      public void record(
+          final String stage, final long parts, final long writeBacks, final long nanos) {}
+
+      @Override
+      public boolean isEnabled() {
+        return false;
+      }
+    };
+  }
+}
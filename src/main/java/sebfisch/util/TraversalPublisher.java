@@ -0,0 +1,143 @@
+package sebfisch.util;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Publishes the parts of a root to each subscriber. Every subscription runs its own traversal on
+ * the given executor. The traversal is suspended whenever the subscriber has no outstanding demand,
+ * so parts are handed over one by one without buffering.
+ *
+ * @param <R> type of the root structure
+ * @param <P> type of published parts
+ */
+final class TraversalPublisher<R, P> implements Flow.Publisher<P> {
+
+  private final Traversal<R, P> traversal;
+  private final R root;
+  private final Executor executor;
+
+  /**
+   * Creates a publisher for the parts of the given root.
+   *
+   * @param traversal traversal for published parts
+   * @param root structured data
+   * @param executor executor running one traversal per subscription
+   */
+  TraversalPublisher(final Traversal<R, P> traversal, final R root, final Executor executor) {
+    this.traversal = traversal;
+    this.root = root;
+    this.executor = executor;
+  }
+
+  @Override
+  public void subscribe(final Flow.Subscriber<? super P> subscriber) {
+    final Handoff<P> handoff = new Handoff<>(Objects.requireNonNull(subscriber));
+    subscriber.onSubscribe(handoff);
+    executor.execute(() -> handoff.run(traversal, root));
+  }
+
+  /** Signals that a subscription was cancelled while the traversal was running. */
+  private static final class Cancelled extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    Cancelled() {
+      super(null, null, false, false);
+    }
+  }
+
+  /**
+   * Subscription handing over parts from the traversing thread to the subscriber.
+   *
+   * @param <P> type of published parts
+   */
+  private static final class Handoff<P> implements Flow.Subscription {
+    private final Flow.Subscriber<? super P> subscriber;
+    private final Lock lock = new ReentrantLock();
+    private final Condition demanded = lock.newCondition();
+    private long demand;
+    private boolean cancelled;
+    private Throwable error;
+
+    Handoff(final Flow.Subscriber<? super P> subscriber) {
+      this.subscriber = subscriber;
+    }
+
+    @Override
+    public void request(final long count) {
+      lock.lock();
+      try {
+        if (count <= 0) {
+          error = new IllegalArgumentException("non-positive request: " + count);
+          cancelled = true;
+        } else {
+          demand = demand + count < 0 ? Long.MAX_VALUE : demand + count;
+        }
+        demanded.signal();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public void cancel() {
+      lock.lock();
+      try {
+        cancelled = true;
+        demanded.signal();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    <R> void run(final Traversal<R, P> traversal, final R root) {
+      try {
+        traversal.traverse(root, this::emit);
+        if (!isCancelled()) {
+          subscriber.onComplete();
+        }
+      } catch (Cancelled e) {
+        if (error != null) {
+          subscriber.onError(error);
+        }
+      } catch (RuntimeException e) {
+        if (!isCancelled()) {
+          subscriber.onError(e);
+        }
+      }
+    }
+
+    private void emit(final P part) {
+      lock.lock();
+      try {
+        while (demand == 0 && !cancelled) {
+          demanded.await();
+        }
+        if (cancelled) {
+          throw new Cancelled();
+        }
+        demand--;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        cancelled = true;
+        throw new Cancelled();
+      } finally {
+        lock.unlock();
+      }
+      subscriber.onNext(part);
+    }
+
+    private boolean isCancelled() {
+      lock.lock();
+      try {
+        return cancelled;
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+}
@@ -0,0 +1,20 @@
+package sebfisch.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/** Flight recorder event for a complete run of {@link Traversal#traverse}. */
+@Name("sebfisch.util.Traverse")
+@Label("Traverse")
+@Category("Traversals")
+@Description("Traversal of all parts of a single root")
+@Threshold("10 ms")
+class TraverseEvent extends Event {
+  @Label("Parts")
+  @Description("Number of traversed parts")
+  long parts;
+}
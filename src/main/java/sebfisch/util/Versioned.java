@@ -0,0 +1,15 @@
+package sebfisch.util;
+
+/**
+ * Mutable data that counts its modifications. Traversals use versions to skip writing back parts
+ * that were not modified.
+ */
+public interface Versioned {
+
+  /**
+   * Provides access to the current version. The version increases with every modification.
+   *
+   * @return current version
+   */
+  long version();
+}
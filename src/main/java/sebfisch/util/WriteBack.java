@@ -0,0 +1,123 @@
+package sebfisch.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * A hook that is notified when updated parts are written back by {@link Traversal#map(Function,
+ * BiConsumer)} on the current thread. Traversal modes that process parts later than they are
+ * traversed use it to finish pending work before parts are written back, others to observe
+ * write-back. Traversals only look for hooks while at least one is installed on some thread.
+ */
+abstract class WriteBack {
+
+  private static final ThreadLocal<WriteBack> CURRENT = new ThreadLocal<>();
+  private static final AtomicInteger INSTALLED = new AtomicInteger();
+
+  /** Versions of parts implementing {@link Versioned}. */
+  static final ToLongFunction<Object> VERSION = part -> ((Versioned) part).version();
+
+  private WriteBack outer;
+
+  /**
+   * Passes a part to a consumer and afterwards calls the given write-back if the version of the
+   * part changed. Installed hooks are notified before the part is passed to the consumer and before
+   * its version is compared, and may delay the comparison and write-back until pending work for
+   * the part is complete.
+   *
+   * @param <Q> type of the part
+   * @param part part passed to the consumer
+   * @param consumer consumer that may modify the part
+   * @param version version of the part, or {@code null} to write back unconditionally
+   * @param writeBack action called with a changed part
+   */
+  static <Q> void consume(
+      final Q part,
+      final Consumer<? super Q> consumer,
+      final ToLongFunction<? super Q> version,
+      final Consumer<? super Q> writeBack) {
+    final long before = version == null ? 0 : version.applyAsLong(part);
+    final WriteBack hook = INSTALLED.get() == 0 ? null : CURRENT.get();
+    if (hook == null) {
+      consumer.accept(part);
+      if (version == null || version.applyAsLong(part) != before) {
+        writeBack.accept(part);
+      }
+      return;
+    }
+    hook.enter();
+    consumer.accept(part);
+    hook.writeBack(
+        () -> {
+          if (version == null || version.applyAsLong(part) != before) {
+            writeBack.accept(part);
+          }
+        });
+  }
+
+  /** Notifies all hooks installed on the current thread of a completed write-back. */
+  static void complete() {
+    if (INSTALLED.get() == 0) {
+      return;
+    }
+    for (WriteBack hook = CURRENT.get(); hook != null; hook = hook.outer) {
+      hook.afterWriteBack();
+    }
+  }
+
+  /**
+   * Runs the given action with this hook installed on the current thread.
+   *
+   * @param action action during which this hook is notified
+   */
+  void install(final Runnable action) {
+    outer = CURRENT.get();
+    CURRENT.set(this);
+    INSTALLED.incrementAndGet();
+    try {
+      action.run();
+    } finally {
+      INSTALLED.decrementAndGet();
+      if (outer == null) {
+        CURRENT.remove();
+      } else {
+        CURRENT.set(outer);
+      }
+    }
+  }
+
+  /** Notifies this hook and all outer hooks that a part is about to be consumed. */
+  private void enter() {
+    for (WriteBack hook = this; hook != null; hook = hook.outer) {
+      hook.beforePart();
+    }
+  }
+
+  /**
+   * Calls {@link #beforeWriteBack()} and passes the given write-back on to the outer hook, or runs
+   * it if there is none. Hooks may override this method to run the write-back later on the same
+   * thread, as long as they do so before their installed action returns.
+   *
+   * @param action comparing versions of a consumed part and writing it back if it changed
+   */
+  void writeBack(final Runnable action) {
+    beforeWriteBack();
+    if (outer == null) {
+      action.run();
+    } else {
+      outer.writeBack(action);
+    }
+  }
+
+  /** Called before a part is passed to the consumer that may modify it. */
+  void beforePart() {}
+
+  /** Called before a part is written back. */
+  void beforeWriteBack() {}
+
+  /** Called after a part was written back. */
+  void afterWriteBack() {}
+}
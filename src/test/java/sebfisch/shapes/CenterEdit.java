@@ -0,0 +1,82 @@
+package sebfisch.shapes;
+
+import java.io.IOException;
+import sebfisch.util.BinaryReader;
+import sebfisch.util.BinaryWriter;
+
+/** New center of the shape at an index of an image, recorded by {@link Image#centers}. */
+public final class CenterEdit {
+  private final int index;
+  private final double x;
+  private final double y;
+
+  /**
+   * Creates an edit.
+   *
+   * @param index index of the moved shape
+   * @param x X coordinate of the new center
+   * @param y Y coordinate of the new center
+   */
+  public CenterEdit(final int index, final double x, final double y) {
+    this.index = index;
+    this.x = x;
+    this.y = y;
+  }
+
+  /**
+   * Provides access to the index.
+   *
+   * @return index of the moved shape
+   */
+  public int getIndex() {
+    return index;
+  }
+
+  /**
+   * Provides access to the new center.
+   *
+   * @return new center point
+   */
+  public Point getCenter() {
+    return new Point(x, y);
+  }
+
+  /**
+   * Applies this edit to the given image.
+   *
+   * @param image image with a shape at the index of this edit
+   */
+  public void applyTo(final Image image) {
+    Shape.center().traverse(image.getShapes().get(index), center -> center.setX(x).setY(y));
+  }
+
+  /**
+   * Writes this edit: the index followed by the coordinates of the new center.
+   *
+   * @param out binary output
+   * @throws IOException if writing fails
+   */
+  public void writeTo(final BinaryWriter out) throws IOException {
+    out.putInt(index).putDouble(x).putDouble(y);
+  }
+
+  /**
+   * Reads an edit written with {@link #writeTo(BinaryWriter)}.
+   *
+   * @param in binary input
+   * @return read edit
+   * @throws IOException if reading fails or the input is malformed
+   */
+  public static CenterEdit readFrom(final BinaryReader in) throws IOException {
+    final int index = in.getInt();
+    if (index < 0) {
+      throw new IOException("malformed center edit");
+    }
+    return new CenterEdit(index, in.getDouble(), in.getDouble());
+  }
+
+  @Override
+  public String toString() {
+    return "CenterEdit(" + index + "," + getCenter() + ")";
+  }
+}
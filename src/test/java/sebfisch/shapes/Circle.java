@@ -1,10 +1,14 @@
 package sebfisch.shapes;
 
 import sebfisch.test.gen.random.RandomGenerator;
+import sebfisch.util.Setter;
 import sebfisch.util.Traversal;
 
 /** Represents a circle around a specific point with a specific radius. */
 public class Circle implements Shape {
+  private static final Traversal<Circle, Point> CENTER =
+      new Traversal.For<Circle>().map(Circle::getCenter);
+
   private Point center;
   private double radius;
 
@@ -39,7 +43,22 @@ public class Circle implements Shape {
    * @return center traversal
    */
   public static Traversal<Circle, Point> center() {
-    return new Traversal.For<Circle>().map(Circle::getCenter);
+    return CENTER;
+  }
+
+  /**
+   * Setter for the center point of a circle. Updates create a new circle with the same radius.
+   *
+   * @return center setter
+   */
+  public static Setter<Circle, Point> centerSetter() {
+    return new Setter.For<Circle>()
+        .map(Circle::getCenter, (circle, center) -> new Circle(center, circle.getRadius()));
+  }
+
+  @Override
+  public String toString() {
+    return "Circle(" + getCenter() + "," + getRadius() + ")";
   }
 
   /** Random generator for circle arguments of unit tests. */
@@ -1,12 +1,29 @@
 package sebfisch.shapes;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Stream;
 import sebfisch.test.gen.random.RandomGenerator;
+import sebfisch.test.gen.random.SizedGenerator;
+import sebfisch.util.BinaryReader;
+import sebfisch.util.BinaryWriter;
+import sebfisch.util.Setter;
 import sebfisch.util.Traversal;
 
 /** An image contains an arbitrary number of shapes. */
 public class Image {
+  private static final Traversal<Image, Shape> SHAPES = new Traversal.Elements<>(Image::getShapes);
+  private static final Traversal<Image, Point> CENTERS = SHAPES.compose(Shape.center());
+  private static final int CHUNK_SIZE = 1 << 10;
+  private static final int SHAPE_BYTES = Byte.BYTES + 3 * Double.BYTES;
+
+  static final byte CIRCLE = 0;
+  static final byte SQUARE = 1;
+
   private List<Shape> shapes;
 
   /** Creates an empty image containing no shapes. */
@@ -14,6 +31,15 @@ public class Image {
     shapes = new ArrayList();
   }
 
+  /**
+   * Creates an image containing the given shapes.
+   *
+   * @param shapes list of shapes in the created image
+   */
+  public Image(final List<Shape> shapes) {
+    this.shapes = shapes;
+  }
+
   /**
    * Provides access to the shapes in this image.
    *
@@ -24,12 +50,159 @@ public class Image {
   }
 
   /**
-   * Traversal for the shapes in an image.
+   * Traversal for the shapes in an image. Shapes at specific indices are accessed directly.
    *
    * @return shapes traversal
    */
   public static Traversal<Image, Shape> shapes() {
-    return new Traversal.For<Image>().flatMap(Image::getShapes);
+    return SHAPES;
+  }
+
+  /**
+   * Setter for the shapes in an image. Updated images share unchanged shapes with the original and
+   * store their shapes in an immutable {@link sebfisch.util.PersistentList}, so that updating a few
+   * shapes of an updated image only copies the paths to them.
+   *
+   * @return shapes setter
+   */
+  public static Setter<Image, Shape> shapeSetter() {
+    return new Setter.For<Image>().flatMap(Image::getShapes, (image, shapes) -> new Image(shapes));
+  }
+
+  /**
+   * Setter for the shape at the given index of an image. Only the given shape is accessed.
+   *
+   * @param index index of the updated shape
+   * @return shape setter
+   */
+  public static Setter<Image, Shape> shapeSetter(final int index) {
+    return new Setter.For<Image>()
+        .map(Image::getShapes, (image, shapes) -> new Image(shapes))
+        .compose(Setter.elementAt(index));
+  }
+
+  /**
+   * Traversal for the centers of the shapes in an image, recording moved centers. Every shape is
+   * expected to have a single center, like circles and squares, so that the index of a center is
+   * the index of its shape.
+   *
+   * @param edits consumer of recorded edits, called by the traversing thread
+   * @return center traversal recording changes
+   */
+  public static Traversal<Image, Point> centers(final Consumer<? super CenterEdit> edits) {
+    return CENTERS.recordChanges(
+        center ->
+            edits.accept(
+                new CenterEdit(
+                    Math.toIntExact(center.getIndex()),
+                    center.getValue().getX(),
+                    center.getValue().getY())));
+  }
+
+  /**
+   * Applies the given edits in order. Only the moved shapes are accessed.
+   *
+   * @param edits edits recorded for an image with the shapes of this image
+   * @return this image, mutated
+   */
+  public Image replay(final List<CenterEdit> edits) {
+    edits.forEach(edit -> edit.applyTo(this));
+    return this;
+  }
+
+  /**
+   * Writes this image in a compact columnar format: the number of shapes followed by columns for
+   * the kinds of shapes, the X and Y coordinates of their locations and their sizes. The location
+   * of a circle is its center and its size is the radius, the location of a square is its top-left
+   * corner.
+   *
+   * @param out binary output
+   * @throws IOException if writing fails
+   * @throws IllegalArgumentException if the image contains shapes other than circles and squares
+   */
+  public void writeTo(final BinaryWriter out) throws IOException {
+    out.putInt(shapes.size());
+    for (final Shape shape : shapes) {
+      if (shape instanceof Circle) {
+        out.putByte(CIRCLE);
+      } else if (shape instanceof Square) {
+        out.putByte(SQUARE);
+      } else {
+        throw new IllegalArgumentException("unsupported shape " + shape);
+      }
+    }
+    writeColumn(out, shape -> location(shape).getX());
+    writeColumn(out, shape -> location(shape).getY());
+    writeColumn(
+        out,
+        shape ->
+            shape instanceof Circle ? ((Circle) shape).getRadius() : ((Square) shape).getSize());
+  }
+
+  private void writeColumn(final BinaryWriter out, final ToDoubleFunction<Shape> value)
+      throws IOException {
+    final double[] column = new double[Math.min(shapes.size(), CHUNK_SIZE)];
+    int count = 0;
+    for (final Shape shape : shapes) {
+      column[count++] = value.applyAsDouble(shape);
+      if (count == column.length) {
+        out.putDoubles(column, 0, count);
+        count = 0;
+      }
+    }
+    out.putDoubles(column, 0, count);
+  }
+
+  private static Point location(final Shape shape) {
+    return shape instanceof Circle ? ((Circle) shape).getCenter() : ((Square) shape).getTopLeft();
+  }
+
+  /**
+   * Reads an image written with {@link #writeTo(BinaryWriter)}. Columns are read in bulk. The
+   * number of shapes in the header is checked against the remaining input if its size is known.
+   *
+   * @param in binary input
+   * @return image with the read shapes
+   * @throws IOException if reading fails or the input is malformed
+   */
+  public static Image readFrom(final BinaryReader in) throws IOException {
+    final int count = in.getInt();
+    final long remaining = in.remaining();
+    if (count < 0 || remaining >= 0 && remaining < (long) count * SHAPE_BYTES) {
+      throw new IOException("malformed image header");
+    }
+    // without a known input size, the kinds column grows with the bytes actually read and bounds
+    // the memory allocated for the other columns
+    byte[] kinds = new byte[remaining < 0 ? Math.min(count, CHUNK_SIZE) : count];
+    in.getBytes(kinds, 0, kinds.length);
+    while (kinds.length < count) {
+      final int read = kinds.length;
+      kinds = Arrays.copyOf(kinds, (int) Math.min(count, 2L * read));
+      in.getBytes(kinds, read, kinds.length);
+    }
+    final double[] xs = new double[count];
+    final double[] ys = new double[count];
+    final double[] sizes = new double[count];
+    in.getDoubles(xs, 0, count);
+    in.getDoubles(ys, 0, count);
+    in.getDoubles(sizes, 0, count);
+    final List<Shape> shapes = new ArrayList<>(count);
+    for (int index = 0; index < count; index++) {
+      final Point location = new Point(xs[index], ys[index]);
+      if (kinds[index] == CIRCLE) {
+        shapes.add(new Circle(location, sizes[index]));
+      } else if (kinds[index] == SQUARE) {
+        shapes.add(new Square(location, sizes[index]));
+      } else {
+        throw new IOException("malformed shape kind " + kinds[index]);
+      }
+    }
+    return new Image(shapes);
+  }
+
+  @Override
+  public String toString() {
+    return "Image" + shapes;
   }
 
   /** Random generator for image arguments of unit tests. */
@@ -48,4 +221,37 @@ public class Image {
       return result;
     }
   }
+
+  /** Generator for images with a growing number of shapes, shrunk by removing shapes. */
+  public static class SizedGen extends SizedGenerator<Image> {
+    private final Shape.Gen shapeGen = new Shape.Gen();
+
+    /** Creates a generator for images with up to 1000 shapes. */
+    public SizedGen() {
+      this(1000);
+    }
+
+    /**
+     * Creates a generator for images with up to the given number of shapes.
+     *
+     * @param maxShapeCount maximum number of shapes with unit scale
+     */
+    public SizedGen(final int maxShapeCount) {
+      super(maxShapeCount);
+    }
+
+    @Override
+    public Image get(final int size) {
+      final List<Shape> shapes = new ArrayList<>(size);
+      for (int count = 0; count < size; count++) {
+        shapes.add(shapeGen.get());
+      }
+      return new Image(shapes);
+    }
+
+    @Override
+    public Stream<Image> shrink(final Image image) {
+      return shrinkList(image.getShapes()).map(Image::new);
+    }
+  }
 }
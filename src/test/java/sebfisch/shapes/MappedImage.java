@@ -0,0 +1,281 @@
+package sebfisch.shapes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * An image whose shapes are stored in a memory-mapped file with fixed-size records. Opening an
+ * image only maps the file, shapes are accessed through lightweight views which read and write
+ * coordinates in the mapping. Updates of shapes, for example through {@link Image#shapes()} and
+ * {@link Shape#center()}, are written straight to the file.
+ *
+ * <p>The file starts with a header containing a magic number, the record size and the number of
+ * shapes. Each shape is stored in a record of 32 bytes with its kind, the X and Y coordinates of
+ * its location and its size, like in {@link Image#writeTo}. The file is mapped in segments of at
+ * most 1 GiB. Views of different shapes can be used concurrently.
+ */
+public final class MappedImage extends Image {
+
+  private static final int MAGIC = 0x53494d47;
+  private static final int HEADER_BYTES = 16;
+  private static final int RECORD_BYTES = 32;
+  private static final int KIND = 0;
+  private static final int X = 8;
+  private static final int Y = 16;
+  private static final int SIZE = 24;
+  private static final int RECORDS_PER_SEGMENT = 1 << 25;
+
+  private final Records records;
+
+  private MappedImage(final Records records) {
+    super(records);
+    this.records = records;
+  }
+
+  /**
+   * Writes the shapes of the given image to a new file and maps it.
+   *
+   * @param file file to create or overwrite
+   * @param image image containing only circles and squares
+   * @return mapped image with the same shapes
+   * @throws IOException if writing or mapping the file fails
+   * @throws IllegalArgumentException if the image contains shapes other than circles and squares
+   */
+  public static MappedImage create(final Path file, final Image image) throws IOException {
+    return create(file, image, RECORDS_PER_SEGMENT);
+  }
+
+  static MappedImage create(final Path file, final Image image, final int recordsPerSegment)
+      throws IOException {
+    final List<Shape> shapes = image.getShapes();
+    try (FileChannel channel =
+        FileChannel.open(
+            file,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+      final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+      header.putInt(MAGIC).putInt(RECORD_BYTES).putLong(shapes.size()).flip();
+      while (header.hasRemaining()) {
+        channel.write(header, header.position());
+      }
+      final Records records = map(channel, shapes.size(), recordsPerSegment);
+      for (int index = 0; index < shapes.size(); index++) {
+        records.put(index, shapes.get(index));
+      }
+      return new MappedImage(records);
+    }
+  }
+
+  /**
+   * Maps an image file for reading and writing.
+   *
+   * @param file file created with {@link #create}
+   * @return mapped image
+   * @throws IOException if reading or mapping the file fails or the file is malformed
+   */
+  public static MappedImage open(final Path file) throws IOException {
+    return open(file, RECORDS_PER_SEGMENT);
+  }
+
+  static MappedImage open(final Path file, final int recordsPerSegment) throws IOException {
+    try (FileChannel channel =
+        FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+      int read = 0;
+      while (header.hasRemaining() && read >= 0) {
+        read = channel.read(header, header.position());
+      }
+      header.flip();
+      if (header.remaining() < HEADER_BYTES
+          || header.getInt() != MAGIC
+          || header.getInt() != RECORD_BYTES) {
+        throw new IOException("not a mapped image file: " + file);
+      }
+      final long count = header.getLong();
+      if (count < 0
+          || count > Integer.MAX_VALUE
+          || channel.size() < HEADER_BYTES + count * RECORD_BYTES) {
+        throw new IOException("malformed mapped image file: " + file);
+      }
+      return new MappedImage(map(channel, (int) count, recordsPerSegment));
+    }
+  }
+
+  private static Records map(final FileChannel channel, final int count, final int perSegment)
+      throws IOException {
+    final MappedByteBuffer[] segments =
+        new MappedByteBuffer[Math.max(1, (count + perSegment - 1) / perSegment)];
+    for (int segment = 0; segment < segments.length; segment++) {
+      final long first = (long) segment * perSegment;
+      final long records = Math.min(perSegment, count - first);
+      segments[segment] =
+          channel.map(
+              FileChannel.MapMode.READ_WRITE,
+              HEADER_BYTES + first * RECORD_BYTES,
+              records * RECORD_BYTES);
+    }
+    return new Records(segments, count, perSegment);
+  }
+
+  /** Writes changes of shapes to the storage device containing the mapped file. */
+  public void force() {
+    for (final MappedByteBuffer segment : records.segments) {
+      segment.force();
+    }
+  }
+
+  /** List of views for the records in the mapped segments. */
+  private static final class Records extends AbstractList<Shape> implements RandomAccess {
+    private final MappedByteBuffer[] segments;
+    private final int size;
+    private final int perSegment;
+
+    Records(final MappedByteBuffer[] segments, final int size, final int perSegment) {
+      this.segments = segments;
+      this.size = size;
+      this.perSegment = perSegment;
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public Shape get(final int index) {
+      Objects.checkIndex(index, size);
+      return kind(index) == CIRCLE ? new MappedCircle(this, index) : new MappedSquare(this, index);
+    }
+
+    byte kind(final int index) {
+      return segments[index / perSegment].get(offset(index) + KIND);
+    }
+
+    double get(final int index, final int field) {
+      return segments[index / perSegment].getDouble(offset(index) + field);
+    }
+
+    void set(final int index, final int field, final double value) {
+      segments[index / perSegment].putDouble(offset(index) + field, value);
+    }
+
+    void put(final int index, final Shape shape) {
+      final Point location;
+      final double size;
+      if (shape instanceof Circle) {
+        location = ((Circle) shape).getCenter();
+        size = ((Circle) shape).getRadius();
+        segments[index / perSegment].put(offset(index) + KIND, CIRCLE);
+      } else if (shape instanceof Square) {
+        location = ((Square) shape).getTopLeft();
+        size = ((Square) shape).getSize();
+        segments[index / perSegment].put(offset(index) + KIND, SQUARE);
+      } else {
+        throw new IllegalArgumentException("unsupported shape " + shape);
+      }
+      set(index, X, location.getX());
+      set(index, Y, location.getY());
+      set(index, SIZE, size);
+    }
+
+    private int offset(final int index) {
+      return index % perSegment * RECORD_BYTES;
+    }
+  }
+
+  /** View of a circle record. */
+  private static final class MappedCircle extends Circle {
+    private final Records records;
+    private final int index;
+
+    MappedCircle(final Records records, final int index) {
+      super(null, 0);
+      this.records = records;
+      this.index = index;
+    }
+
+    @Override
+    public Point getCenter() {
+      return new MappedPoint(records, index);
+    }
+
+    @Override
+    public double getRadius() {
+      return records.get(index, SIZE);
+    }
+  }
+
+  /** View of a square record. */
+  private static final class MappedSquare extends Square {
+    private final Records records;
+    private final int index;
+
+    MappedSquare(final Records records, final int index) {
+      super(null, 0);
+      this.records = records;
+      this.index = index;
+    }
+
+    @Override
+    public Point getTopLeft() {
+      return new MappedPoint(records, index);
+    }
+
+    @Override
+    public double getSize() {
+      return records.get(index, SIZE);
+    }
+  }
+
+  /** View of the location stored in a record. */
+  private static final class MappedPoint extends Point {
+    private final Records records;
+    private final int index;
+    private long version;
+
+    MappedPoint(final Records records, final int index) {
+      super(0, 0);
+      this.records = records;
+      this.index = index;
+    }
+
+    @Override
+    public double getX() {
+      return records.get(index, X);
+    }
+
+    @Override
+    public double getY() {
+      return records.get(index, Y);
+    }
+
+    @Override
+    public Point setX(final double x) {
+      records.set(index, X, x);
+      version++;
+      return this;
+    }
+
+    @Override
+    public Point setY(final double y) {
+      records.set(index, Y, y);
+      version++;
+      return this;
+    }
+
+    @Override
+    public long version() {
+      return version;
+    }
+  }
+}
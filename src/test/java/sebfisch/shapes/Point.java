@@ -1,12 +1,14 @@
 package sebfisch.shapes;
 
 import sebfisch.test.gen.random.RandomGenerator;
+import sebfisch.util.Versioned;
 
 /** A point in 2D space with double precision coordinates. */
-public class Point {
+public class Point implements Versioned {
 
   private double thisX;
   private double thisY;
+  private long version;
 
   /**
    * Creates a new point at the given coordinates.
@@ -45,6 +47,7 @@ public class Point {
    */
   public Point setX(final double x) {
     thisX = x;
+    version++;
 
     return this;
   }
@@ -57,13 +60,19 @@ public class Point {
    */
   public Point setY(final double y) {
     thisY = y;
+    version++;
 
     return this;
   }
 
+  @Override
+  public long version() {
+    return version;
+  }
+
   @Override
   public String toString() {
-    return "(" + thisX + "," + thisY + ")";
+    return "(" + getX() + "," + getY() + ")";
   }
 
   @Override
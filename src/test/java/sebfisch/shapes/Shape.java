@@ -1,6 +1,7 @@
 package sebfisch.shapes;
 
 import sebfisch.test.gen.random.RandomGenerator;
+import sebfisch.util.Setter;
 import sebfisch.util.Traversal;
 
 /** A geometric shape is placed in an image at a specific location. */
@@ -15,17 +16,28 @@ public interface Shape {
 
   /**
    * A traversal for the center location of a shape. Works for stored as well as computed centers.
+   * The returned traversal is shared between calls.
    *
    * @return center traversal
    */
   public static Traversal<Shape, Point> center() {
-    return traversalFor(Circle.class)
-        .compose(Circle.center())
-        .andAlso(traversalFor(Square.class).compose(Square.center()));
+    return ShapeTraversals.CENTER;
   }
 
-  private static <S extends Shape> Traversal<Shape, S> traversalFor(final Class<S> clazz) {
-    return new Traversal.For<Shape>().filter(clazz::isInstance).map(clazz::cast);
+  /**
+   * A setter for the center location of a shape. Updates create new shapes instead of mutating
+   * existing ones.
+   *
+   * @return center setter
+   */
+  public static Setter<Shape, Point> centerSetter() {
+    return setterFor(Circle.class)
+        .compose(Circle.centerSetter())
+        .andAlso(setterFor(Square.class).compose(Square.centerSetter()));
+  }
+
+  private static <S extends Shape> Setter<Shape, S> setterFor(final Class<S> clazz) {
+    return new Setter.For<Shape>().filter(clazz::isInstance).map(clazz::cast, (shape, s) -> s);
   }
 
   /** Random generator for shape arguments of unit tests. */
@@ -0,0 +1,18 @@
+package sebfisch.shapes;
+
+import sebfisch.util.Traversal;
+
+/** Holds traversals for shapes that are shared between calls of their factory methods. */
+final class ShapeTraversals {
+
+  static final Traversal<Shape, Point> CENTER =
+      traversalFor(Circle.class)
+          .compose(Circle.center())
+          .andAlso(traversalFor(Square.class).compose(Square.center()));
+
+  private ShapeTraversals() {}
+
+  private static <S extends Shape> Traversal<Shape, S> traversalFor(final Class<S> clazz) {
+    return new Traversal.For<Shape>().filter(clazz::isInstance).map(clazz::cast);
+  }
+}
@@ -1,10 +1,14 @@
 package sebfisch.shapes;
 
 import sebfisch.test.gen.random.RandomGenerator;
+import sebfisch.util.Setter;
 import sebfisch.util.Traversal;
 
 /** A square has a computed center based on top-left corner and size. */
 public class Square implements Shape {
+  private static final Traversal<Square, Point> CENTER =
+      new Traversal.For<Square>().map(Square::getCenter, (sq, c) -> sq.setCenter(c));
+
   private Point topLeft;
   private double size;
 
@@ -39,7 +43,7 @@ public class Square implements Shape {
 
   @Override
   public Point getCenter() {
-    return new Point(size, size).scale(0.5).add(topLeft);
+    return new Point(getSize(), getSize()).scale(0.5).add(getTopLeft());
   }
 
   /**
@@ -48,7 +52,7 @@ public class Square implements Shape {
    * @param newCenter new center
    */
   public void setCenter(final Point newCenter) {
-    topLeft.add(getCenter().scale(-1).add(newCenter));
+    getTopLeft().add(getCenter().scale(-1).add(newCenter));
   }
 
   /**
@@ -58,7 +62,27 @@ public class Square implements Shape {
    * @return center traversal
    */
   public static Traversal<Square, Point> center() {
-    return new Traversal.For<Square>().map(Square::getCenter, (sq, c) -> sq.setCenter(c));
+    return CENTER;
+  }
+
+  /**
+   * Setter for the center of a square. Updates create a new square with the same size whose
+   * top-left corner reflects the new center.
+   *
+   * @return center setter
+   */
+  public static Setter<Square, Point> centerSetter() {
+    return new Setter.For<Square>()
+        .map(
+            Square::getCenter,
+            (sq, c) ->
+                new Square(
+                    new Point(sq.getSize(), sq.getSize()).scale(-0.5).add(c), sq.getSize()));
+  }
+
+  @Override
+  public String toString() {
+    return "Square(" + getTopLeft() + "," + getSize() + ")";
   }
 
   /** Random generator for square arguments of unit tests. */
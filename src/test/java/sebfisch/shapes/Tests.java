@@ -1,13 +1,52 @@
 package sebfisch.shapes;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static sebfisch.test.Assertions.assertForAll;
 import static sebfisch.test.Assertions.assertStreamEquals;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.ArgumentsSource;
 import org.junit.jupiter.params.provider.MethodSource;
+import sebfisch.test.gen.random.SizedGenerator;
+import sebfisch.util.BinaryReader;
+import sebfisch.util.BinaryWriter;
+import sebfisch.util.Indexed;
+import sebfisch.util.Memoized;
+import sebfisch.util.MetricsRegistry;
 import sebfisch.util.Traversal;
 
 /** This class demonstrates the use of traversals using images containing geometric shapes. */
@@ -36,6 +75,19 @@ public class Tests {
     assertEquals(shape.getCenter(), Shape.center().partsOf(shape).findFirst().orElseThrow());
   }
 
+  /**
+   * Tests that generators constructed by the same test generate the same arguments regardless of
+   * other generators constructed before, and that nested generators are seeded differently.
+   */
+  @Test
+  public void testGeneratorSeeds() {
+    final List<Point> points =
+        Stream.generate(new Point.Gen()).limit(10).collect(Collectors.toList());
+    new Shape.Gen().get();
+    assertEquals(points, Stream.generate(new Point.Gen()).limit(10).collect(Collectors.toList()));
+    assertNotEquals(points.get(0), new Circle.Gen().get().getCenter());
+  }
+
   /**
    * Tests that a traversal using {@link sebfisch.util.Traversal#flatMap} traverses all elements
    * returned by the given function.
@@ -89,6 +141,722 @@ public class Tests {
     assertEquals(newCenter, shape.getCenter());
   }
 
+  /**
+   * Tests that a persistent update with {@link sebfisch.util.Setter#over} leaves the original image
+   * untouched and shares shapes that are not updated.
+   *
+   * @param image instantiated with random images
+   */
+  @ParameterizedTest
+  @ArgumentsSource(Image.Gen.class)
+  public void testPersistentCenterUpdate(final Image image) {
+    final List<Point> oldCenters =
+        Image.shapes().compose(Shape.center()).partsOf(image).collect(Collectors.toList());
+    final Image updated =
+        Image.shapeSetter()
+            .filter(Square.class::isInstance)
+            .compose(Shape.centerSetter())
+            .over(image, c -> new Point(c.getX() + 1, c.getY()));
+    assertStreamEquals(oldCenters.stream(), Image.shapes().compose(Shape.center()).partsOf(image));
+    for (int index = 0; index < image.getShapes().size(); index++) {
+      final Shape oldShape = image.getShapes().get(index);
+      final Shape newShape = updated.getShapes().get(index);
+      final double shift = oldShape instanceof Circle ? 0 : 1;
+      assertEquals(oldShape instanceof Circle, oldShape == newShape);
+      assertEquals(oldShape.getCenter().getX() + shift, newShape.getCenter().getX(), 1e-9);
+    }
+  }
+
+  /** Tests that a persistent update of a single shape shares all other shapes. */
+  @Test
+  public void testPersistentUpdateAtIndex() {
+    final Image image = new Image.SizedGen(1000).get(1000);
+    final List<Point> centers = Image.shapes().compose(Shape.center()).toList(copy(image));
+    final Image updated =
+        Image.shapeSetter(500).compose(Shape.centerSetter()).over(image, c -> new Point(0, 0));
+    final Image twice =
+        Image.shapeSetter(7).compose(Shape.centerSetter()).over(updated, c -> new Point(1, 1));
+    assertEquals(centers, Image.shapes().compose(Shape.center()).toList(image));
+    assertEquals(new Point(0, 0), twice.getShapes().get(500).getCenter());
+    assertEquals(new Point(1, 1), twice.getShapes().get(7).getCenter());
+    for (int index = 0; index < 1000; index++) {
+      if (index != 7 && index != 500) {
+        assertSame(image.getShapes().get(index), twice.getShapes().get(index));
+      }
+    }
+    assertSame(image, Image.shapeSetter(1000).over(image, shape -> null));
+  }
+
+  /**
+   * Tests that a persistent update that changes no part returns the original root.
+   *
+   * @param image instantiated with random images
+   */
+  @ParameterizedTest
+  @ArgumentsSource(Image.Gen.class)
+  public void testPersistentIdentityUpdate(final Image image) {
+    assertSame(image, Image.shapeSetter().compose(Shape.centerSetter()).over(image, c -> c));
+  }
+
+  /**
+   * Tests that instrumented stages report parts and write-backs of the traversal up to each stage,
+   * and that the selectivity of stages after stages without parts is 1.
+   *
+   * @param image instantiated with random images
+   */
+  @ParameterizedTest
+  @ArgumentsSource(Image.Gen.class)
+  public void testInstrumentedStages(final Image image) {
+    final MetricsRegistry metrics = new MetricsRegistry();
+    final Traversal<Image, Point> centers =
+        Image.shapes()
+            .instrumented("shapes", metrics)
+            .filter(Square.class::isInstance)
+            .map(Square.class::cast)
+            .instrumented("squares", metrics)
+            .compose(Square.center())
+            .instrumented("centers", metrics);
+    centers.traverse(image, center -> center.scale(2));
+    final long squareCount = image.getShapes().stream().filter(Square.class::isInstance).count();
+    assertEquals(1, metrics.stage("shapes").getRuns());
+    assertEquals(image.getShapes().size(), metrics.stage("shapes").getParts());
+    assertEquals(squareCount, metrics.stage("squares").getParts());
+    assertEquals(0, metrics.stage("squares").getWriteBacks());
+    assertEquals(squareCount, metrics.stage("centers").getWriteBacks());
+    assertEquals(
+        image.getShapes().isEmpty() ? 1 : (double) squareCount / image.getShapes().size(),
+        metrics.selectivity("squares", "shapes"));
+    assertTrue(metrics.stage("centers").getNanos() >= 0);
+    assertEquals(0, metrics.stage("circles").getNanos());
+    assertEquals(1, metrics.selectivity("squares", "circles"));
+  }
+
+  /**
+   * Tests that terminal operations on traversals agree with the corresponding stream operations.
+   *
+   * @param image instantiated with random images
+   */
+  @ParameterizedTest
+  @ArgumentsSource(Image.Gen.class)
+  public void testTerminalsCorrespondToStream(final Image image) {
+    final Traversal<Image, Point> centers = Image.shapes().compose(Shape.center());
+    final List<Point> expected = centers.partsOf(image).collect(Collectors.toList());
+    assertEquals(expected.size(), centers.count(image));
+    assertEquals(expected.size(), centers.fold(image, 0, (n, c) -> n + 1));
+    assertEquals(expected, centers.toList(image));
+    assertEquals(expected, centers.collect(image, Collectors.toList()));
+    assertArrayEquals(expected.toArray(), centers.toArray(image, Point[]::new));
+    assertEquals(
+        expected.stream().mapToDouble(Point::getX).sum(),
+        centers.sumDouble(image, Point::getX),
+        1e-9);
+  }
+
+  /** Tests that parallel reductions over many shapes agree with sequential ones. */
+  @Test
+  public void testParallelReductionOfCenters() {
+    final Image image =
+        new Image(Stream.generate(new Shape.Gen()).limit(10_000).collect(Collectors.toList()));
+    final Traversal<Image, Point> centers = Image.shapes().compose(Shape.center());
+    assertEquals(
+        centers.sumDouble(image, Point::getX),
+        Image.shapes()
+            .reduceParallel(image, Shape.center(), 0.0, (sum, c) -> sum + c.getX(), Double::sum),
+        1e-6);
+    assertEquals(
+        centers.toList(image),
+        Image.shapes().collectParallel(image, Shape.center(), Collectors.toList()));
+  }
+
+  /**
+   * Tests that memoized traversals replay cached parts until invalidated or until the version of
+   * their root changed, and always run traversals that write back parts.
+   *
+   * @param square instantiated with random squares
+   */
+  @ParameterizedTest
+  @ArgumentsSource(Square.Gen.class)
+  public void testMemoizedCenter(final Square square) {
+    final Memoized<Square, Point> centers =
+        new Traversal.For<Square>().map(Square::getCenter).memoized();
+    final Point center = centers.partsOf(square).findFirst().orElseThrow();
+    assertSame(center, centers.partsOf(square).findFirst().orElseThrow());
+    centers.invalidate(square);
+    assertNotSame(center, centers.partsOf(square).findFirst().orElseThrow());
+    assertEquals(1, centers.getHits());
+    assertEquals(2, centers.getMisses());
+
+    final Memoized<Square, Point> updatedCenters = Square.center().memoized();
+    updatedCenters.traverse(square, c -> c.getX());
+    updatedCenters.traverse(square, c -> c.setX(0));
+    updatedCenters.traverse(square, c -> c.setY(0));
+    assertEquals(new Point(0, 0), square.getCenter());
+    updatedCenters.traverse(square, c -> c.getX());
+    assertEquals(0, updatedCenters.getHits());
+    assertEquals(4, updatedCenters.getMisses());
+
+    final Point point = new Point(1, 2);
+    final Memoized<Point, Double> xs = new Traversal.For<Point>().map(Point::getX).memoized();
+    assertEquals(List.of(1.0), xs.toList(point));
+    assertEquals(List.of(1.0), xs.toList(point));
+    point.setX(3);
+    assertEquals(List.of(3.0), xs.toList(point));
+    assertEquals(1, xs.getHits());
+    assertEquals(2, xs.getMisses());
+  }
+
+  /**
+   * Tests that positional access to shapes agrees with counting traversed shapes.
+   *
+   * @param image instantiated with random images
+   */
+  @ParameterizedTest
+  @ArgumentsSource(Image.Gen.class)
+  public void testPositionalAccess(final Image image) {
+    final Traversal<Image, Shape> counted = new Traversal.For<Image>().flatMap(Image::getShapes);
+    for (int index = -1; index <= image.getShapes().size(); index++) {
+      assertEquals(counted.onlyAt(index).toList(image), Image.shapes().onlyAt(index).toList(image));
+      assertEquals(
+          counted.exceptAt(index).toList(image), Image.shapes().exceptAt(index).toList(image));
+    }
+    assertEquals(counted.slice(1, 3).toList(image), Image.shapes().slice(1, 3).toList(image));
+    assertEquals(
+        counted.indexed().map(Indexed::getIndex).toList(image),
+        Image.shapes().indexed().map(Indexed::getIndex).toList(image));
+  }
+
+  /**
+   * Tests that positional access to elements of linked lists agrees with array lists and that
+   * modified elements are written back through the list iterator, or by index when write-back is
+   * deferred until the iterator moved on.
+   *
+   * @param image instantiated with random images
+   */
+  @ParameterizedTest
+  @ArgumentsSource(Image.Gen.class)
+  public void testLinkedElements(final Image image) {
+    final Traversal<List<Point>, Point> elements = new Traversal.Elements<>(list -> list);
+    final List<Point> centers = Image.shapes().compose(Shape.center()).toList(image);
+    final List<Point> linked = new LinkedList<>(centers);
+    for (int index = -1; index <= centers.size(); index++) {
+      final int at = index;
+      assertEquals(
+          elements.onlyAt(i -> i != at).toList(centers),
+          elements.onlyAt(i -> i != at).toList(linked));
+      assertEquals(
+          elements.slice(index, index + 2).toList(centers),
+          elements.slice(index, index + 2).toList(linked));
+    }
+    final Traversal<List<Point>, String> indexed =
+        elements.indexed().map(ip -> ip.getIndex() + ":" + ip.getValue());
+    assertEquals(indexed.toList(centers), indexed.toList(linked));
+    assertEquals(
+        Image.shapes().toList(image),
+        new Traversal.Elements<List<Shape>, Shape>(list -> list)
+            .toList(new LinkedList<>(image.getShapes())));
+
+    final List<Integer> setIndices = new ArrayList<>();
+    final List<Point> points =
+        new LinkedList<>(List.of(new Point(0, 0), new Point(1, 1))) {
+          private static final long serialVersionUID = 1L;
+
+          @Override
+          public Point set(final int index, final Point point) {
+            setIndices.add(index);
+            return super.set(index, point);
+          }
+        };
+    final MetricsRegistry registry = new MetricsRegistry();
+    final Traversal<List<Point>, Point> instrumented = elements.instrumented("points", registry);
+    instrumented.traverse(points, p -> p.setX(2));
+    instrumented.traverse(points, p -> p.getX());
+    assertEquals(2, registry.stage("points").getWriteBacks());
+    assertEquals(List.of(), setIndices);
+
+    final CompletableFuture<Void> secondStarted = new CompletableFuture<>();
+    elements
+        .traverseAsync(
+            points,
+            p -> {
+              if (p.getY() == 0) {
+                return secondStarted.thenRun(() -> p.setY(3));
+              }
+              secondStarted.complete(null);
+              return CompletableFuture.completedFuture(p.setY(4));
+            })
+        .join();
+    assertEquals(List.of(new Point(2, 3), new Point(2, 4)), points);
+    assertEquals(List.of(0), setIndices);
+  }
+
+  /** Tests that optimized queries for shape centers agree with a sequential reference traversal. */
+  @Test
+  public void testCenterQueryLaws() {
+    final Traversal<Image, Point> reference =
+        new Traversal.For<Image>().flatMap(Image::getShapes).compose(Shape.center());
+    final Traversal<Image, Point> centers = Image.shapes().compose(Shape.center());
+    assertForAll(
+        new Image.SizedGen(),
+        image -> {
+          final List<Point> expected = reference.toList(image);
+          final int size = expected.size();
+          assertEquals(expected, centers.toList(image));
+          assertEquals(size, centers.count(image));
+          assertEquals(2L * size, centers.estimateSize(image));
+          assertEquals(
+              expected, Image.shapes().collectParallel(image, Shape.center(), Collectors.toList()));
+          final double sum = reference.sumDouble(image, Point::getY);
+          assertEquals(
+              sum,
+              Image.shapes()
+                  .reduceParallel(
+                      image, Shape.center(), 0.0, (acc, c) -> acc + c.getY(), Double::sum),
+              1e-9 * Math.max(1, Math.abs(sum)));
+          assertEquals(
+              reference.slice(size / 3, 2 * size / 3).toList(image),
+              Image.shapes().slice(size / 3, 2 * size / 3).compose(Shape.center()).toList(image));
+          assertEquals(
+              reference.onlyAt(size / 2).toList(image),
+              Image.shapes().onlyAt(size / 2).compose(Shape.center()).toList(image));
+          final List<Point> prepared = new ArrayList<>();
+          centers.prepare(prepared::add).accept(image);
+          assertEquals(expected, prepared);
+          final Memoized<Image, Point> memoized = centers.memoized();
+          assertEquals(expected, memoized.toList(image));
+          assertEquals(expected, memoized.toList(image));
+        });
+  }
+
+  /** Tests that optimized updates of shape centers agree with a persistent reference update. */
+  @Test
+  public void testCenterUpdateLaws() {
+    final Traversal<Image, Point> centers = Image.shapes().compose(Shape.center());
+    final UnaryOperator<Point> move = c -> new Point(c.getX() + 1, c.getY() - 1);
+    assertForAll(
+        new Image.SizedGen(),
+        image -> {
+          final List<Point> original = centers.toList(copy(image));
+          final List<Point> expected =
+              centers.toList(Image.shapeSetter().compose(Shape.centerSetter()).over(image, move));
+          final int size = original.size();
+
+          final Image updated = copy(image);
+          centers.traverse(updated, c -> c.add(new Point(1, -1)));
+          assertEquals(expected, centers.toList(updated));
+
+          final Image asyncUpdated = copy(image);
+          centers
+              .traverseAsync(
+                  asyncUpdated, c -> CompletableFuture.runAsync(() -> c.add(new Point(1, -1))))
+              .join();
+          assertEquals(expected, centers.toList(asyncUpdated));
+
+          final Image sliceUpdated = copy(image);
+          Image.shapes()
+              .slice(size / 3, 2 * size / 3)
+              .compose(Shape.center())
+              .traverse(sliceUpdated, c -> c.add(new Point(1, -1)));
+          assertEquals(
+              IntStream.range(0, size)
+                  .mapToObj(
+                      i -> size / 3 <= i && i < 2 * size / 3 ? expected.get(i) : original.get(i))
+                  .collect(Collectors.toList()),
+              centers.toList(sliceUpdated));
+        });
+  }
+
+  /**
+   * Tests that the centers of squares processed asynchronously are written back without waiting
+   * for computations started for other squares. Every center is visited twice and moved in the
+   * first visit, which for the first square only completes after the second square was visited.
+   * More than a thousand squares make the traversal prune completed computations.
+   */
+  @Test
+  public void testAsyncCenterWriteBacksOverlap() {
+    final int count = 3000;
+    final Image image =
+        new Image(
+            IntStream.range(0, count)
+                .mapToObj(i -> (Shape) new Square(new Point(i, 0), 2))
+                .collect(Collectors.toList()));
+    final CompletableFuture<Void> secondStarted = new CompletableFuture<>();
+    final AtomicInteger started = new AtomicInteger();
+    Image.shapes()
+        .compose(Shape.center())
+        .compose(new Traversal.For<Point>().andAlso(new Traversal.For<>()))
+        .traverseAsync(
+            image,
+            center -> {
+              final int index = started.getAndIncrement();
+              if (index == 2) {
+                secondStarted.complete(null);
+              }
+              if (index % 2 == 1) {
+                return CompletableFuture.completedFuture(null);
+              }
+              final Runnable move = () -> center.add(new Point(0, 1));
+              return index == 0 ? secondStarted.thenRun(move) : CompletableFuture.runAsync(move);
+            })
+        .join();
+    assertEquals(
+        IntStream.range(0, count).mapToObj(i -> new Point(i + 1, 2)).collect(Collectors.toList()),
+        Image.shapes().compose(Shape.center()).toList(image));
+  }
+
+  /**
+   * Tests asynchronous traversals that start no computation for written back parts or fail to
+   * start computations. Failures complete the returned future.
+   */
+  @Test
+  public void testAsyncTraversalEdgeCases() {
+    final Traversal<Image, Point> centers = Image.shapes().compose(Shape.center());
+    final Image image =
+        new Image(List.of(new Square(new Point(0, 0), 2), new Square(new Point(1, 1), 2)));
+    centers.filter(c -> false).traverseAsync(image, c -> new CompletableFuture<>()).join();
+    assertEquals(List.of(new Point(1, 1), new Point(2, 2)), centers.toList(image));
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> centers.traverseAsync(image, c -> new CompletableFuture<>(), Runnable::run, 0));
+
+    final CompletionException failed =
+        assertThrows(
+            CompletionException.class,
+            () ->
+                centers
+                    .traverseAsync(
+                        image,
+                        c -> {
+                          throw new IllegalStateException();
+                        })
+                    .join());
+    assertTrue(failed.getCause() instanceof IllegalStateException);
+
+    final CompletionException interrupted =
+        assertThrows(
+            CompletionException.class,
+            () ->
+                centers
+                    .traverseAsync(
+                        image,
+                        c -> {
+                          Thread.currentThread().interrupt();
+                          return new CompletableFuture<>();
+                        },
+                        Runnable::run,
+                        1)
+                    .join());
+    assertTrue(interrupted.getCause() instanceof InterruptedException);
+    assertTrue(Thread.interrupted());
+  }
+
+  /**
+   * Tests that threads updating disjoint slices of a shared image at the same time move every
+   * shape once per round.
+   *
+   * @throws Exception if an updating thread fails
+   */
+  @Test
+  public void testConcurrentDisjointSliceUpdates() throws Exception {
+    final int threads = 4;
+    final int rounds = 100;
+    final int sliceSize = 250 * SizedGenerator.SCALE;
+    final Traversal<Image, Point> centers = Image.shapes().compose(Shape.center());
+    final Image image = new Image.SizedGen().get(threads * sliceSize);
+    final List<Point> original = centers.toList(copy(image));
+    final CyclicBarrier barrier = new CyclicBarrier(threads);
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      final List<Future<Void>> futures = new ArrayList<>();
+      for (int thread = 0; thread < threads; thread++) {
+        final Traversal<Image, Point> slice =
+            Image.shapes()
+                .slice(thread * sliceSize, (thread + 1) * sliceSize)
+                .compose(Shape.center());
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int round = 0; round < rounds; round++) {
+                    barrier.await();
+                    slice.traverse(image, c -> c.add(new Point(1, 1)));
+                  }
+                  return null;
+                }));
+      }
+      for (final Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(
+        original.stream().map(c -> c.add(new Point(rounds, rounds))).collect(Collectors.toList()),
+        centers.toList(image));
+  }
+
+  /**
+   * Tests that concurrent synchronous and asynchronous updates of different images through a
+   * shared memoized traversal are written back and never leave stale parts in its cache.
+   */
+  @Test
+  public void testConcurrentMemoizedWriteBack() {
+    final Memoized<Image, Point> centers = Image.shapes().compose(Shape.center()).memoized();
+    final Image.SizedGen gen = new Image.SizedGen(100);
+    final List<Image> images = Stream.generate(gen).limit(64).collect(Collectors.toList());
+    final List<List<Point>> expected =
+        images.stream()
+            .map(
+                image ->
+                    centers.toList(
+                        Image.shapeSetter()
+                            .compose(Shape.centerSetter())
+                            .over(image, c -> new Point(c.getX() + 1, c.getY() + 1))))
+            .collect(Collectors.toList());
+    IntStream.range(0, images.size())
+        .parallel()
+        .forEach(
+            index -> {
+              final Image image = images.get(index);
+              centers.toList(image);
+              if (index % 2 == 0) {
+                centers.traverse(image, c -> c.add(new Point(1, 1)));
+              } else {
+                centers
+                    .traverseAsync(
+                        image, c -> CompletableFuture.runAsync(() -> c.add(new Point(1, 1))))
+                    .join();
+              }
+              assertEquals(expected.get(index), centers.toList(image));
+            });
+  }
+
+  /**
+   * Tests that image headers claiming more shapes than the input contains are rejected before
+   * columns are allocated for them, and that images larger than a chunk are read from channels
+   * without a known size.
+   *
+   * @throws IOException if accessing the temporary file fails
+   */
+  @Test
+  public void testBinaryHeaderBounds() throws IOException {
+    final byte[] header = {Byte.MAX_VALUE, -1, -1, -1, Image.CIRCLE};
+    assertThrows(
+        EOFException.class,
+        () ->
+            Image.readFrom(
+                new BinaryReader(Channels.newChannel(new ByteArrayInputStream(header)))));
+    final Path file = Files.createTempFile("image", ".bin");
+    try {
+      Files.write(file, header);
+      try (FileChannel channel = FileChannel.open(file)) {
+        assertEquals(
+            "malformed image header",
+            assertThrows(IOException.class, () -> Image.readFrom(new BinaryReader(channel)))
+                .getMessage());
+      }
+    } finally {
+      Files.delete(file);
+    }
+
+    final Image image = new Image.SizedGen().get(3000);
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final BinaryWriter out = new BinaryWriter(Channels.newChannel(bytes));
+    image.writeTo(out);
+    out.flush();
+    assertEquals(
+        image.toString(),
+        Image.readFrom(
+                new BinaryReader(
+                    Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray()))))
+            .toString());
+  }
+
+  /** Tests that images read back from their binary format contain the same shapes. */
+  @Test
+  public void testBinaryRoundTrip() {
+    assertForAll(
+        new Image.SizedGen(),
+        image -> {
+          try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final BinaryWriter out = new BinaryWriter(Channels.newChannel(bytes));
+            image.writeTo(out);
+            out.flush();
+            assertEquals(Integer.BYTES + 25 * image.getShapes().size(), bytes.size());
+            final Image restored =
+                Image.readFrom(
+                    new BinaryReader(
+                        Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray()))));
+            assertEquals(image.toString(), restored.toString());
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+  }
+
+  /**
+   * Tests writing several images to a file and reading them back in order.
+   *
+   * @throws IOException if accessing the temporary file fails
+   */
+  @Test
+  public void testBinaryFileSnapshot() throws IOException {
+    final Image.SizedGen gen = new Image.SizedGen(10_000);
+    final List<Image> images = Stream.generate(gen).limit(10).collect(Collectors.toList());
+    final Path file = Files.createTempFile("images", ".bin");
+    try {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+        final BinaryWriter out = new BinaryWriter(channel);
+        for (final Image image : images) {
+          image.writeTo(out);
+        }
+        out.flush();
+      }
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        final BinaryReader in = new BinaryReader(channel);
+        for (final Image image : images) {
+          assertEquals(image.toString(), Image.readFrom(in).toString());
+        }
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  /**
+   * Tests that mapped images contain the shapes they were created with and that updates are
+   * written to the mapped file.
+   */
+  @Test
+  public void testMappedImageUpdates() {
+    final Traversal<Image, Point> centers = Image.shapes().compose(Shape.center());
+    assertForAll(
+        new Image.SizedGen(),
+        image -> {
+          try {
+            final Path file = Files.createTempFile("image", ".map");
+            try {
+              final MappedImage mapped = MappedImage.create(file, image, 64);
+              assertEquals(image.toString(), mapped.toString());
+
+              final Image updated = copy(image);
+              final int size = image.getShapes().size();
+              for (final Image target : List.of(updated, mapped)) {
+                centers.traverse(target, c -> c.add(new Point(1, -1)));
+                Image.shapes()
+                    .slice(size / 3, 2 * size / 3)
+                    .compose(Shape.center())
+                    .traverse(target, c -> c.scale(2));
+              }
+              assertEquals(centers.toList(updated), centers.toList(mapped));
+              mapped.force();
+              assertEquals(mapped.toString(), MappedImage.open(file, 64).toString());
+            } finally {
+              Files.delete(file);
+            }
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+  }
+
+  /** Tests moving the shapes of many images in parallel with per-worker sinks. */
+  @Test
+  public void testBatchCenterUpdate() {
+    final Image.SizedGen gen = new Image.SizedGen(20);
+    final List<Image> images = Stream.generate(gen).limit(1000).collect(Collectors.toList());
+    final Traversal<Image, Point> centers = Image.shapes().compose(Shape.center());
+    final List<List<Point>> expected =
+        images.stream()
+            .map(
+                image -> {
+                  final List<Point> points = centers.toList(copy(image));
+                  points.forEach(c -> c.add(new Point(1, 1)));
+                  return points;
+                })
+            .collect(Collectors.toList());
+    final long moved =
+        centers
+            .traverseAllParallel(
+                images,
+                () ->
+                    new Consumer<Point>() {
+                      private long count;
+
+                      @Override
+                      public void accept(final Point center) {
+                        center.add(new Point(1, 1));
+                        count++;
+                      }
+                    })
+            .stream()
+            .mapToLong(sink -> sink.count)
+            .sum();
+    assertEquals(expected.stream().mapToLong(List::size).sum(), moved);
+    assertEquals(expected, images.stream().map(centers::toList).collect(Collectors.toList()));
+  }
+
+  /** Tests that parallel indexing assigns the same indices as sequential indexing. */
+  @Test
+  public void testParallelIndexedCenters() {
+    final Image image = new Image.SizedGen(5000).get(5000);
+    final Traversal<Image, Point> centers = Image.shapes().compose(Shape.center());
+    final List<Point> original = centers.toList(copy(image));
+    final List<Point> expected = centers.toList(copy(image));
+    for (int index = 0; index < expected.size(); index += 2) {
+      expected.get(index).add(new Point(index, 0));
+    }
+    final Point[] indexed = new Point[expected.size()];
+    Image.shapes()
+        .traverseIndexedParallel(
+            image,
+            Shape.center(),
+            center -> {
+              final int index = center.getIndex();
+              indexed[index] = new Point(center.getValue().getX(), center.getValue().getY());
+              if (index % 2 == 0) {
+                center.getValue().add(new Point(index, 0));
+              }
+            });
+    assertEquals(original, Arrays.asList(indexed));
+    assertEquals(expected, centers.toList(image));
+  }
+
+  /** Tests that recorded center edits replay moved centers on a copy. */
+  @Test
+  public void testRecordedCenterEditsReplay() throws IOException {
+    final Image image = new Image.SizedGen(1000).get(1000);
+    final Image replica = copy(image);
+    final List<CenterEdit> edits = new ArrayList<>();
+    Image.centers(edits::add)
+        .onlyAt(i -> i % 3 == 0)
+        .traverse(image, center -> center.add(new Point(1, 2)));
+    Image.centers(edits::add).traverse(image, center -> {});
+    assertEquals(334, edits.size());
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final BinaryWriter out = new BinaryWriter(Channels.newChannel(bytes));
+    for (final CenterEdit edit : edits) {
+      edit.writeTo(out);
+    }
+    out.flush();
+    assertEquals(edits.size() * (Integer.BYTES + 2 * Double.BYTES), bytes.size());
+    final BinaryReader in =
+        new BinaryReader(Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())));
+    final List<CenterEdit> restored = new ArrayList<>();
+    for (int index = 0; index < edits.size(); index++) {
+      restored.add(CenterEdit.readFrom(in));
+    }
+    final Traversal<Image, Point> centers = Image.shapes().compose(Shape.center());
+    assertEquals(centers.toList(image), centers.toList(replica.replay(restored)));
+  }
+
+  private static Image copy(final Image image) {
+    return Image.shapeSetter()
+        .compose(Shape.centerSetter())
+        .over(image, c -> new Point(c.getX(), c.getY()));
+  }
+
   static Stream<Arguments> rndShapeAndPointProvider() {
     final int count = 100;
     final Shape.Gen shapeGen = new Shape.Gen();
@@ -2,11 +2,18 @@ package sebfisch.test;
 
 import static org.junit.jupiter.api.Assertions.assertIterableEquals;
 
+import java.util.Iterator;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
+import sebfisch.test.gen.random.RandomGenerator;
+import sebfisch.test.gen.random.SizedGenerator;
 
 /** Defines additional assertions. */
 public interface Assertions {
 
+  /** Maximum number of successful shrinking steps for a failing property. */
+  int MAX_SHRINKS = 1000;
+
   /**
    * Assert that two streams contain equal elements.
    *
@@ -20,4 +27,52 @@ public interface Assertions {
     final Iterable<B> iterBs = () -> bs.iterator();
     assertIterableEquals(iterAs, iterBs);
   }
+
+  /**
+   * Assert that a property holds for all arguments of a generator. If the property fails, simpler
+   * arguments are checked to report a small counterexample along with the seed of the generators.
+   * The property must not mutate its argument.
+   *
+   * @param <T> type of generated arguments
+   * @param gen generator for arguments
+   * @param property assertions about an argument
+   */
+  static <T> void assertForAll(final SizedGenerator<T> gen, final Consumer<T> property) {
+    while (gen.hasNext()) {
+      T value = gen.next();
+      Throwable failure = failure(property, value);
+      if (failure != null) {
+        int shrinks = 0;
+        boolean shrunk = true;
+        while (shrunk && shrinks < MAX_SHRINKS) {
+          shrunk = false;
+          final Iterator<T> candidates = gen.shrink(value).iterator();
+          while (!shrunk && candidates.hasNext()) {
+            final T candidate = candidates.next();
+            final Throwable candidateFailure = failure(property, candidate);
+            if (candidateFailure != null) {
+              value = candidate;
+              failure = candidateFailure;
+              shrinks++;
+              shrunk = true;
+            }
+          }
+        }
+        throw new AssertionError(
+            String.format(
+                "property fails for %s after %d shrinks (seed %d)",
+                value, shrinks, RandomGenerator.SEED),
+            failure);
+      }
+    }
+  }
+
+  private static <T> Throwable failure(final Consumer<T> property, final T value) {
+    try {
+      property.accept(value);
+      return null;
+    } catch (AssertionError | RuntimeException e) {
+      return e;
+    }
+  }
 }
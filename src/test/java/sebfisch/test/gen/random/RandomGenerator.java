@@ -1,8 +1,16 @@
 package sebfisch.test.gen.random;
 
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
 import java.util.NoSuchElementException;
 import java.util.Random;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.platform.commons.annotation.Testable;
 import sebfisch.test.gen.Generator;
 
 /**
@@ -10,13 +18,25 @@ import sebfisch.test.gen.Generator;
  * defined as sub-classes overriding the get method of the {@link java.util.function.Supplier}
  * interface by using the protected {@link java.util.Random} instance.
  *
+ * <p>The random instances of all generators are seeded from a common seed which is chosen at random
+ * unless it is specified with the system property {@code sebfisch.test.seed}. The seed of each
+ * generator combines the common seed with the generator classes under construction and the test
+ * method constructing it or receiving its arguments, so that the arguments of a test do not depend
+ * on which other tests run before it. Test runs with the same seed generate the same arguments for
+ * the same test in the same order.
+ *
  * @param <T> type of generated arguments
  */
 public abstract class RandomGenerator<T> extends Generator<T> implements Supplier<T> {
+  /** Common seed of all generators, reported with failing properties to reproduce them. */
+  public static final long SEED = Long.getLong("sebfisch.test.seed", System.nanoTime());
+
+  private final String generators = generators();
+
   private int size = 100;
 
   /** This instance can be used in sub-classes to generate random values. */
-  protected Random random = new Random();
+  protected Random random = new Random(seed(generators + "#" + test()));
 
   @Override
   public int size() {
@@ -35,4 +55,65 @@ public abstract class RandomGenerator<T> extends Generator<T> implements Supplie
     }
     return get();
   }
+
+  /**
+   * Provides arguments for a parameterized test, seeded for the receiving test method. Nested
+   * generators keep the seed derived when they were constructed.
+   */
+  @Override
+  public Stream<? extends Arguments> provideArguments(final ExtensionContext context) {
+    random.setSeed(seed(generators + "#" + name(context.getRequiredTestMethod())));
+    return super.provideArguments(context);
+  }
+
+  private static long seed(final String key) {
+    return SEED ^ 0x9E3779B97F4A7C15L * key.hashCode();
+  }
+
+  private static String generators() {
+    return StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE)
+        .walk(
+            frames ->
+                frames
+                    .filter(
+                        frame ->
+                            "<init>".equals(frame.getMethodName())
+                                && RandomGenerator.class.isAssignableFrom(
+                                    frame.getDeclaringClass())
+                                && !Modifier.isAbstract(frame.getDeclaringClass().getModifiers()))
+                    .map(frame -> frame.getDeclaringClass().getName())
+                    .collect(Collectors.joining("<")));
+  }
+
+  private static String test() {
+    return StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE)
+        .walk(
+            frames ->
+                frames
+                    .filter(frame -> !frame.getMethodName().startsWith("<"))
+                    .map(RandomGenerator::testMethod)
+                    .filter(method -> method != null)
+                    .map(RandomGenerator::name)
+                    .findFirst()
+                    .orElse(""));
+  }
+
+  private static Method testMethod(final StackWalker.StackFrame frame) {
+    try {
+      final Method method =
+          frame
+              .getDeclaringClass()
+              .getDeclaredMethod(frame.getMethodName(), frame.getMethodType().parameterArray());
+      return Arrays.stream(method.getAnnotations())
+              .anyMatch(a -> a.annotationType().isAnnotationPresent(Testable.class))
+          ? method
+          : null;
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  private static String name(final Method method) {
+    return method.getDeclaringClass().getName() + "." + method.getName();
+  }
 }
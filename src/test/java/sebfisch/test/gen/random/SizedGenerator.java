@@ -0,0 +1,94 @@
+package sebfisch.test.gen.random;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * A sized generator provides random arguments of growing size. The size of generated arguments
+ * increases linearly up to a maximum size which can be scaled with the system property {@code
+ * sebfisch.test.scale} to run the same tests on larger data. Specific generators are defined by
+ * overriding the get method with a size parameter, and the shrink method to simplify
+ * counterexamples of failing properties.
+ *
+ * @param <T> type of generated arguments
+ */
+public abstract class SizedGenerator<T> extends RandomGenerator<T> {
+
+  /** Factor for the maximum size of generated arguments. */
+  public static final int SCALE = Integer.getInteger("sebfisch.test.scale", 1);
+
+  private static final int STEPS = 100;
+
+  private final int maxSize;
+  private int step;
+
+  /**
+   * Creates a generator for arguments up to the given size, multiplied by the scale factor.
+   *
+   * @param maxSize maximum size of generated arguments with unit scale
+   */
+  protected SizedGenerator(final int maxSize) {
+    this.maxSize = maxSize * SCALE;
+  }
+
+  /**
+   * Generates an argument of the given size.
+   *
+   * @param size non-negative size of the generated argument
+   * @return generated argument
+   */
+  public abstract T get(int size);
+
+  @Override
+  public T get() {
+    step = step % STEPS + 1;
+    return get((int) ((long) maxSize * step / STEPS));
+  }
+
+  /**
+   * Computes simpler variants of an argument, simplest first. Properties failing for an argument
+   * are checked for its variants to find a smaller counterexample. The default implementation
+   * provides no variants.
+   *
+   * @param value generated argument, not mutated
+   * @return simpler arguments
+   */
+  public Stream<T> shrink(final T value) {
+    return Stream.empty();
+  }
+
+  /**
+   * Computes index ranges to remove from a sequence of the given length for shrinking it. Larger
+   * ranges come first, starting with the whole sequence and ending with every single index.
+   *
+   * @param length length of the shrunk sequence
+   * @return ranges as pairs of inclusive begin and exclusive end index
+   */
+  protected static Stream<int[]> removals(final int length) {
+    return IntStream.iterate(length, chunk -> chunk > 0, chunk -> chunk / 2)
+        .boxed()
+        .flatMap(
+            chunk ->
+                IntStream.iterate(0, begin -> begin < length, begin -> begin + chunk)
+                    .mapToObj(begin -> new int[] {begin, Math.min(length, begin + chunk)}));
+  }
+
+  /**
+   * Computes shorter versions of the given list by removing ranges of elements.
+   *
+   * @param <E> type of list elements
+   * @param list shrunk list, not mutated
+   * @return shorter lists sharing elements with the given list
+   */
+  protected static <E> Stream<List<E>> shrinkList(final List<E> list) {
+    return removals(list.size())
+        .map(
+            range -> {
+              final List<E> result = new ArrayList<>(list.subList(0, range[0]));
+              result.addAll(list.subList(range[1], list.size()));
+              return result;
+            });
+  }
+}
@@ -0,0 +1,288 @@
+package sebfisch.text;
+
+import java.io.IOException;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import sebfisch.util.BinaryWriter;
+
+/**
+ * Text that can be read by many threads in parallel while other threads modify it. Reads are
+ * served from an immutable snapshot of the contents which is taken once after each modification
+ * and shared by all readers, so readers neither lock nor wait for each other. Versions are read
+ * optimistically. Modifications, including compound ones like {@link #map(CharUnaryOperator)}, run
+ * exclusively under a write lock and discard the snapshot.
+ *
+ * <p>Traversals read a text from a single snapshot instead of reading each character separately,
+ * and write back modified parts exclusively. A write-back fails with a {@link
+ * ConcurrentModificationException} if the text was modified after the traversal read it, instead
+ * of overwriting the other modification.
+ */
+public class ConcurrentText extends Text {
+
+  private static final long serialVersionUID = 1L;
+
+  private final StampedLock lock = new StampedLock();
+  private transient volatile Snapshot snapshot;
+  /** Thread holding the write lock, only compared with the current thread. */
+  private transient Thread writer;
+
+  /** Creates empty text. */
+  public ConcurrentText() {}
+
+  /**
+   * Creates text with the given initial contents.
+   *
+   * @param chars initial text contents
+   */
+  public ConcurrentText(final CharSequence chars) {
+    append(chars);
+  }
+
+  /** Immutable contents of a text together with their version. */
+  private static final class Snapshot {
+    private final String chars;
+    private final long version;
+
+    Snapshot(final String chars, final long version) {
+      this.chars = chars;
+      this.version = version;
+    }
+  }
+
+  private boolean isWriter() {
+    return writer == Thread.currentThread();
+  }
+
+  private Snapshot snapshot() {
+    Snapshot current = snapshot;
+    if (current == null) {
+      final long stamp = lock.readLock();
+      try {
+        current = snapshot;
+        if (current == null) {
+          current = new Snapshot(super.toString(), super.version());
+          snapshot = current;
+        }
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+    return current;
+  }
+
+  private Text write(final Supplier<Text> update) {
+    if (isWriter()) {
+      return update.get();
+    }
+    final long stamp = lock.writeLock();
+    writer = Thread.currentThread();
+    try {
+      return update.get();
+    } finally {
+      snapshot = null;
+      writer = null;
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  <T> T read(final BiFunction<CharSequence, Long, T> read) {
+    if (isWriter()) {
+      return super.read(read);
+    }
+    final Snapshot current = snapshot();
+    return read.apply(current.chars, current.version);
+  }
+
+  @Override
+  Text writeBack(final long version, final Supplier<Text> update) {
+    return write(
+        () -> {
+          if (super.version() != version) {
+            throw new ConcurrentModificationException("text modified since it was traversed");
+          }
+          return update.get();
+        });
+  }
+
+  @Override
+  public long version() {
+    if (isWriter()) {
+      return super.version();
+    }
+    long stamp = lock.tryOptimisticRead();
+    long version = super.version();
+    if (!lock.validate(stamp)) {
+      stamp = lock.readLock();
+      try {
+        version = super.version();
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+    return version;
+  }
+
+  @Override
+  public char charAt(final int index) {
+    if (isWriter()) {
+      return super.charAt(index);
+    }
+    final String chars = snapshot().chars;
+    return chars.charAt(validIndex(index, chars.length()));
+  }
+
+  @Override
+  public int length() {
+    return isWriter() ? super.length() : snapshot().chars.length();
+  }
+
+  @Override
+  public Text subSequence(final int begin, final int end) {
+    if (isWriter()) {
+      return super.subSequence(begin, end);
+    }
+    final String chars = snapshot().chars;
+    return new Text(
+        chars.substring(validIndex(begin, chars.length()), validIndex(end, chars.length())));
+  }
+
+  @Override
+  public String toString() {
+    return isWriter() ? super.toString() : snapshot().chars;
+  }
+
+  @Override
+  public ConcurrentText clone() {
+    return new ConcurrentText(toString());
+  }
+
+  @Override
+  public void writeTo(final BinaryWriter out) throws IOException {
+    if (isWriter()) {
+      super.writeTo(out);
+    } else {
+      write(snapshot().chars, out);
+    }
+  }
+
+  @Override
+  public Text recordEdits(final Consumer<? super TextEdit> edits) {
+    return write(() -> super.recordEdits(edits));
+  }
+
+  @Override
+  public Text append(final char c) {
+    return write(() -> super.append(c));
+  }
+
+  @Override
+  public Text append(final CharSequence cs) {
+    return write(() -> super.append(cs));
+  }
+
+  @Override
+  public Text append(final CharSequence cs, final int begin, final int end) {
+    return write(() -> super.append(cs, begin, end));
+  }
+
+  @Override
+  public Text append(final Iterable<? extends CharSequence> parts) {
+    return write(() -> super.append(parts));
+  }
+
+  @Override
+  public Text delete() {
+    return write(super::delete);
+  }
+
+  @Override
+  public Text delete(final int index) {
+    return write(() -> super.delete(index));
+  }
+
+  @Override
+  public Text delete(final int begin, final int end) {
+    return write(() -> super.delete(begin, end));
+  }
+
+  @Override
+  public Text insert(final int offset, final CharSequence chars) {
+    return write(() -> super.insert(offset, chars));
+  }
+
+  @Override
+  public Text replace(final int index, final char c) {
+    return write(() -> super.replace(index, c));
+  }
+
+  @Override
+  public Text replace(final CharSequence chars) {
+    return write(() -> super.replace(chars));
+  }
+
+  @Override
+  public Text replace(final int index, final CharSequence chars) {
+    return write(() -> super.replace(index, chars));
+  }
+
+  @Override
+  public Text replace(final int begin, final int end, final CharSequence chars) {
+    return write(() -> super.replace(begin, end, chars));
+  }
+
+  @Override
+  public Text replay(final List<TextEdit> edits) {
+    return write(() -> super.replay(edits));
+  }
+
+  @Override
+  public Text filter(final CharPredicate pred) {
+    return write(() -> super.filter(pred));
+  }
+
+  @Override
+  public Text filter(final int index, final CharPredicate pred) {
+    return write(() -> super.filter(index, pred));
+  }
+
+  @Override
+  public Text filter(final int begin, final int end, final CharPredicate pred) {
+    return write(() -> super.filter(begin, end, pred));
+  }
+
+  @Override
+  public Text map(final CharUnaryOperator op) {
+    return write(() -> super.map(op));
+  }
+
+  @Override
+  public Text map(final int index, final CharUnaryOperator op) {
+    return write(() -> super.map(index, op));
+  }
+
+  @Override
+  public Text map(final int begin, final int end, final CharUnaryOperator op) {
+    return write(() -> super.map(begin, end, op));
+  }
+
+  @Override
+  public Text flatMap(final CharFunction<? extends CharSequence> fun) {
+    return write(() -> super.flatMap(fun));
+  }
+
+  @Override
+  public Text flatMap(final int index, final CharFunction<? extends CharSequence> fun) {
+    return write(() -> super.flatMap(index, fun));
+  }
+
+  @Override
+  public Text flatMap(
+      final int begin, final int end, final CharFunction<? extends CharSequence> fun) {
+    return write(() -> super.flatMap(begin, end, fun));
+  }
+}
@@ -0,0 +1,38 @@
+package sebfisch.text;
+
+/**
+ * Measures a bulk mutation of a text and records it as a {@link TextEvent}. Texts only refer to
+ * this class, so that they can be compiled against the API of the targeted release, which lacks
+ * the supertype of flight recorder events.
+ */
+final class JfrTextMutation {
+
+  private final TextEvent event = new TextEvent();
+
+  /** Number of mutated characters or written back groups. */
+  int parts;
+
+  /** Number of characters moved or copied by the underlying buffer. */
+  long copied;
+
+  /** Starts measuring the duration of the mutation. */
+  void begin() {
+    event.begin();
+  }
+
+  /**
+   * Records the mutation if enabled and above the threshold.
+   *
+   * @param operation name of the mutating operation
+   * @param length length of the text after the mutation
+   */
+  void commit(final String operation, final int length) {
+    if (event.shouldCommit()) {
+      event.operation = operation;
+      event.length = length;
+      event.parts = parts;
+      event.copied = copied;
+      event.commit();
+    }
+  }
+}
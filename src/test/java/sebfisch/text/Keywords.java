@@ -0,0 +1,180 @@
+package sebfisch.text;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+/**
+ * A compiled set of keywords for finding occurrences in text with a single scan. Keywords are
+ * matched with an Aho-Corasick automaton which is immutable and can be shared between threads and
+ * reused for any number of texts. Occurrences are selected leftmost-longest: among overlapping
+ * matches the one starting first wins, and among matches starting at the same index the longest
+ * one wins.
+ */
+public final class Keywords {
+
+  private static final int ROOT = 0;
+
+  private final char[][] labels;
+  private final int[][] targets;
+  private final int[] fail;
+  private final int[] output;
+  private final int[] length;
+  private final int maxLength;
+
+  /**
+   * Compiles the given keywords.
+   *
+   * @param keywords non-empty keywords
+   * @throws IllegalArgumentException if a keyword is empty
+   */
+  public Keywords(final Collection<String> keywords) {
+    final List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+    final List<Integer> lengths = new ArrayList<>();
+    trie.add(new TreeMap<>());
+    lengths.add(0);
+    int longest = 0;
+    for (final String keyword : keywords) {
+      if (keyword.isEmpty()) {
+        throw new IllegalArgumentException("empty keyword");
+      }
+      int state = ROOT;
+      for (int index = 0; index < keyword.length(); index++) {
+        final Integer next = trie.get(state).get(keyword.charAt(index));
+        if (next == null) {
+          trie.get(state).put(keyword.charAt(index), trie.size());
+          state = trie.size();
+          trie.add(new TreeMap<>());
+          lengths.add(0);
+        } else {
+          state = next;
+        }
+      }
+      lengths.set(state, keyword.length());
+      longest = Math.max(longest, keyword.length());
+    }
+
+    final int states = trie.size();
+    labels = new char[states][];
+    targets = new int[states][];
+    fail = new int[states];
+    output = new int[states];
+    length = new int[states];
+    maxLength = longest;
+    for (int state = 0; state < states; state++) {
+      final TreeMap<Character, Integer> edges = trie.get(state);
+      labels[state] = new char[edges.size()];
+      targets[state] = new int[edges.size()];
+      int edge = 0;
+      for (final Map.Entry<Character, Integer> entry : edges.entrySet()) {
+        labels[state][edge] = entry.getKey();
+        targets[state][edge] = entry.getValue();
+        edge++;
+      }
+      length[state] = lengths.get(state);
+    }
+
+    final Queue<Integer> queue = new ArrayDeque<>();
+    output[ROOT] = -1;
+    for (final int child : targets[ROOT]) {
+      fail[child] = ROOT;
+      output[child] = -1;
+      queue.add(child);
+    }
+    while (!queue.isEmpty()) {
+      final int state = queue.remove();
+      for (int edge = 0; edge < labels[state].length; edge++) {
+        final int child = targets[state][edge];
+        int fallback = fail[state];
+        int next = transition(fallback, labels[state][edge]);
+        while (next < 0 && fallback != ROOT) {
+          fallback = fail[fallback];
+          next = transition(fallback, labels[state][edge]);
+        }
+        fail[child] = next < 0 ? ROOT : next;
+        output[child] = length[fail[child]] > 0 ? fail[child] : output[fail[child]];
+        queue.add(child);
+      }
+    }
+  }
+
+  /**
+   * Provides access to the length of the longest keyword.
+   *
+   * @return maximum keyword length
+   */
+  public int getMaxLength() {
+    return maxLength;
+  }
+
+  /**
+   * Finds non-overlapping, leftmost-longest occurrences of keywords in the given characters. The
+   * characters are scanned once, and the memory needed besides the result is proportional to the
+   * length of the longest keyword.
+   *
+   * @param chars characters to search
+   * @return begin and end offsets of occurrences in ascending order
+   */
+  public int[] find(final CharSequence chars) {
+    final IntStream.Builder bounds = IntStream.builder();
+    if (maxLength == 0) {
+      return new int[0];
+    }
+    final int[] longestEnd = new int[maxLength];
+    int lastEnd = 0;
+    int state = ROOT;
+    for (int index = 0; index < chars.length(); index++) {
+      final char c = chars.charAt(index);
+      int next = transition(state, c);
+      while (next < 0 && state != ROOT) {
+        state = fail[state];
+        next = transition(state, c);
+      }
+      state = next < 0 ? ROOT : next;
+      final int end = index + 1;
+      for (int match = length[state] > 0 ? state : output[state];
+          match >= 0;
+          match = output[match]) {
+        final int slot = (end - length[match]) % maxLength;
+        longestEnd[slot] = Math.max(longestEnd[slot], end);
+      }
+      final int begin = end - maxLength;
+      if (begin >= 0) {
+        lastEnd = select(bounds, longestEnd, begin, lastEnd);
+      }
+    }
+    for (int begin = Math.max(0, chars.length() - maxLength + 1);
+        begin < chars.length();
+        begin++) {
+      lastEnd = select(bounds, longestEnd, begin, lastEnd);
+    }
+    return bounds.build().toArray();
+  }
+
+  /**
+   * Selects the longest occurrence starting at the given index, unless it overlaps the previously
+   * selected occurrence, and clears the corresponding slot.
+   */
+  private int select(
+      final IntStream.Builder bounds, final int[] longestEnd, final int begin, final int lastEnd) {
+    final int slot = begin % maxLength;
+    final int end = longestEnd[slot];
+    longestEnd[slot] = 0;
+    if (end > 0 && begin >= lastEnd) {
+      bounds.add(begin).add(end);
+      return end;
+    }
+    return lastEnd;
+  }
+
+  private int transition(final int state, final char c) {
+    final int edge = Arrays.binarySearch(labels[state], c);
+    return edge < 0 ? -1 : targets[state][edge];
+  }
+}
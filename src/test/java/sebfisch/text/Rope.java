@@ -0,0 +1,230 @@
+package sebfisch.text;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import sebfisch.util.Setter;
+
+/**
+ * Immutable text stored as a balanced tree of chunks. Sub-sequences and replacements share all
+ * chunks outside the affected range with the original rope, so they cost time logarithmic in the
+ * length of the rope plus the length of inserted characters. Ropes are rebalanced when repeated
+ * replacements make the tree too deep.
+ */
+public final class Rope implements CharSequence {
+
+  private static final int CHUNK_SIZE = 512;
+  private static final int MAX_DEPTH = 48;
+  private static final Rope EMPTY = new Rope("");
+
+  private final String chunk;
+  private final Rope left;
+  private final Rope right;
+  private final int length;
+  private final int depth;
+
+  private Rope(final String chunk) {
+    this.chunk = chunk;
+    this.left = null;
+    this.right = null;
+    this.length = chunk.length();
+    this.depth = 0;
+  }
+
+  private Rope(final Rope left, final Rope right) {
+    this.chunk = null;
+    this.left = left;
+    this.right = right;
+    this.length = left.length + right.length;
+    this.depth = Math.max(left.depth, right.depth) + 1;
+  }
+
+  /**
+   * Creates a rope with the given characters. Ropes are returned unchanged.
+   *
+   * @param chars characters of the rope
+   * @return balanced rope
+   */
+  public static Rope of(final CharSequence chars) {
+    if (chars instanceof Rope) {
+      return (Rope) chars;
+    }
+    final String string = chars.toString();
+    final List<Rope> chunks = new ArrayList<>();
+    for (int begin = 0; begin < string.length(); begin += CHUNK_SIZE) {
+      chunks.add(new Rope(string.substring(begin, Math.min(string.length(), begin + CHUNK_SIZE))));
+    }
+    return balanced(chunks, 0, chunks.size());
+  }
+
+  private static Rope balanced(final List<Rope> chunks, final int from, final int to) {
+    if (to - from == 0) {
+      return EMPTY;
+    }
+    if (to - from == 1) {
+      return chunks.get(from);
+    }
+    final int middle = (from + to) >>> 1;
+    return new Rope(balanced(chunks, from, middle), balanced(chunks, middle, to));
+  }
+
+  private static Rope concat(final Rope left, final Rope right) {
+    if (left.length == 0) {
+      return right;
+    }
+    if (right.length == 0) {
+      return left;
+    }
+    if (left.chunk != null && right.chunk != null && left.length + right.length <= CHUNK_SIZE) {
+      return new Rope(left.chunk + right.chunk);
+    }
+    return new Rope(left, right);
+  }
+
+  @Override
+  public char charAt(final int index) {
+    Objects.checkIndex(index, length);
+    Rope node = this;
+    int offset = index;
+    while (node.chunk == null) {
+      if (offset < node.left.length) {
+        node = node.left;
+      } else {
+        offset -= node.left.length;
+        node = node.right;
+      }
+    }
+    return node.chunk.charAt(offset);
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public Rope subSequence(final int begin, final int end) {
+    Objects.checkFromToIndex(begin, end, length);
+    if (begin == 0 && end == length) {
+      return this;
+    }
+    if (chunk != null) {
+      return new Rope(chunk.substring(begin, end));
+    }
+    if (end <= left.length) {
+      return left.subSequence(begin, end);
+    }
+    if (begin >= left.length) {
+      return right.subSequence(begin - left.length, end - left.length);
+    }
+    return concat(left.subSequence(begin, left.length), right.subSequence(0, end - left.length));
+  }
+
+  /**
+   * Creates a rope where the characters in the given range are replaced with the given characters.
+   * Characters outside the range are shared with this rope, and so are given ropes.
+   *
+   * @param begin index of the first replaced character
+   * @param end end of the replaced range, exclusive
+   * @param chars replacement characters
+   * @return new rope
+   */
+  public Rope replace(final int begin, final int end, final CharSequence chars) {
+    Objects.checkFromToIndex(begin, end, length);
+    final Rope result =
+        concat(concat(subSequence(0, begin), of(chars)), subSequence(end, length));
+    if (result.depth <= MAX_DEPTH) {
+      return result;
+    }
+    final List<Rope> chunks = new ArrayList<>();
+    result.forEachChunk(chunks::add);
+    return balanced(chunks, 0, chunks.size());
+  }
+
+  private void forEachChunk(final Consumer<Rope> action) {
+    if (chunk != null) {
+      action.accept(this);
+    } else {
+      left.forEachChunk(action);
+      right.forEachChunk(action);
+    }
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder result = new StringBuilder(length);
+    forEachChunk(leaf -> result.append(leaf.chunk));
+    return result.toString();
+  }
+
+  @Override
+  public boolean equals(final Object that) {
+    return that instanceof Rope && toString().equals(that.toString());
+  }
+
+  @Override
+  public int hashCode() {
+    return toString().hashCode();
+  }
+
+  /**
+   * Returns a setter for grouping ropes. The given predicate characterizes delimiting characters.
+   * Updated groups are never empty and contain those characters between delimiters. Groups are
+   * found by scanning the chunks of the rope once, and each changed group is replaced in time
+   * logarithmic in the length of the rope. Ropes without changed groups are returned unchanged.
+   *
+   * @param isDelimiting predicate on characters
+   * @return setter for delimited groups
+   */
+  public static Setter<Rope, Rope> groupSetter(final CharPredicate isDelimiting) {
+    return ur ->
+        rope -> {
+          final int[] bounds = rope.groupBounds(isDelimiting);
+          Rope result = rope;
+          int shift = 0;
+          for (int index = 0; index < bounds.length; index += 2) {
+            final Rope group = rope.subSequence(bounds[index], bounds[index + 1]);
+            final Rope newGroup = ur.apply(group);
+            if (newGroup != group) {
+              result = result.replace(bounds[index] + shift, bounds[index + 1] + shift, newGroup);
+              shift += newGroup.length - group.length;
+            }
+          }
+          return result;
+        };
+  }
+
+  /**
+   * Returns a setter for updating words in ropes.
+   *
+   * @return setter for words
+   */
+  public static Setter<Rope, Rope> wordSetter() {
+    return groupSetter(Character::isWhitespace);
+  }
+
+  private int[] groupBounds(final CharPredicate isDelimiting) {
+    final List<Rope> chunks = new ArrayList<>();
+    forEachChunk(chunks::add);
+    final IntStream.Builder bounds = IntStream.builder();
+    int offset = 0;
+    int begin = -1;
+    for (final Rope leaf : chunks) {
+      for (int index = 0; index < leaf.length; index++, offset++) {
+        final boolean delimiting = isDelimiting.test(leaf.chunk.charAt(index));
+        if (delimiting && begin >= 0) {
+          bounds.add(begin).add(offset);
+          begin = -1;
+        } else if (!delimiting && begin < 0) {
+          begin = offset;
+        }
+      }
+    }
+    if (begin >= 0) {
+      bounds.add(begin).add(offset);
+    }
+    return bounds.build().toArray();
+  }
+}
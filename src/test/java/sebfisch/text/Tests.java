@@ -1,11 +1,52 @@
 package sebfisch.text;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static sebfisch.test.Assertions.assertForAll;
 import static sebfisch.test.Assertions.assertStreamEquals;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.Test;
+import sebfisch.util.BinaryReader;
+import sebfisch.util.BinaryWriter;
+import sebfisch.util.MetricsRegistry;
 import sebfisch.util.Traversal;
 
 /** Demonstrates the use of traversals using text processing as an example. */
@@ -59,6 +100,507 @@ public class Tests {
     assertEquals(text.filter(c -> !Character.isWhitespace(c)), collectedWords);
   }
 
+  /** Tests counting words without collecting them. */
+  @Test
+  public void testWordsCount() {
+    assertEquals(6, Text.words().count(LOWER_CASE_WORDS_AMONG_COMPLEX_WHITESPACE));
+  }
+
+  /** Tests that words of different lines processed in parallel are written back afterwards. */
+  @Test
+  public void testParallelTitleCaseConversion() {
+    final Text text = LOWER_CASE_WORDS_AMONG_COMPLEX_WHITESPACE.clone();
+    final long count =
+        Text.lines()
+            .collectParallel(
+                text,
+                Text.words(),
+                Collectors.summingLong(word -> word.map(0, Character::toTitleCase).length()));
+    assertEquals(TITLE_CASE_WORDS_AMONG_COMPLEX_WHITESPACE, text);
+    assertEquals(Text.words().fold(text, 0L, (n, word) -> n + word.length()), count);
+  }
+
+  /** Tests that a prepared traversal can be shared between threads processing different roots. */
+  @Test
+  public void testPreparedWordsCountInParallel() {
+    final LongAdder count = new LongAdder();
+    final Consumer<Text> countWords = Text.words().prepare(word -> count.increment());
+    Stream.generate(LOWER_CASE_WORDS_AMONG_COMPLEX_WHITESPACE::clone)
+        .limit(1000)
+        .parallel()
+        .forEach(countWords);
+    assertEquals(6000, count.sum());
+    assertSame(Text.words(), Text.words());
+  }
+
+  /** Tests that text is only reassembled from words if a word was modified. */
+  @Test
+  public void testUnmodifiedWordsAreNotWrittenBack() {
+    final MetricsRegistry metrics = new MetricsRegistry();
+    final Traversal<Text, Text> words = Text.words().instrumented("words", metrics);
+    final Text text = LOWER_CASE_WORDS.clone();
+    final long version = text.version();
+    words.traverse(text, word -> word.length());
+    assertEquals(version, text.version());
+    assertEquals(0, metrics.stage("words").getWriteBacks());
+    words.traverse(text, word -> word.map(0, Character::toTitleCase));
+    assertEquals(TITLE_CASE_WORDS, text);
+    assertEquals(1, metrics.stage("words").getWriteBacks());
+  }
+
+  /** Tests modifying characters at specific indices. */
+  @Test
+  public void testCharacterUpdates() {
+    final Text text = LOWER_CASE_WORDS.clone();
+    Text.characters().onlyAt(0).traverse(text, c -> c.map(Character::toUpperCase));
+    Text.characters().onlyAt(6).traverse(text, c -> c.map(Character::toUpperCase));
+    assertEquals(TITLE_CASE_WORDS, text);
+    Text.characters().exceptAt(5).traverse(text, c -> c.map(Character::toLowerCase));
+    assertEquals(LOWER_CASE_WORDS, text);
+    assertEquals(LOWER_CASE_WORDS.length(), Text.characters().count(text));
+  }
+
+  /** Tests that slices of words agree with words restricted by index. */
+  @Test
+  public void testWordsSlice() {
+    final Text text = LOWER_CASE_WORDS_AMONG_COMPLEX_WHITESPACE;
+    for (int from = -1; from <= 7; from++) {
+      for (int to = from; to <= 7; to++) {
+        final int begin = from;
+        final int end = to;
+        assertEquals(
+            Text.words().onlyAt(i -> begin <= i && i < end).toList(text),
+            Text.words().slice(from, to).toList(text));
+      }
+    }
+  }
+
+  /** Tests modifying a slice of words. */
+  @Test
+  public void testWordsSliceUpdate() {
+    final Text text = LOWER_CASE_WORDS_AMONG_COMPLEX_WHITESPACE.clone();
+    Text.words().slice(2, 4).traverse(text, word -> word.map(0, Character::toTitleCase));
+    assertEquals(new Text("hello world\nThis\tIs\r\na      title"), text);
+    final long version = text.version();
+    Text.words().slice(0, 6).traverse(text, word -> word.length());
+    assertEquals(version, text.version());
+  }
+
+  /** Tests that optimized queries for words agree with splitting the text at whitespace. */
+  @Test
+  public void testWordsQueryLaws() {
+    assertForAll(
+        new Text.Gen(),
+        text -> {
+          final List<Text> expected =
+              Arrays.stream(text.toString().split("\\s+"))
+                  .filter(word -> !word.isEmpty())
+                  .map(Text::new)
+                  .collect(Collectors.toList());
+          final int size = expected.size();
+          assertEquals(expected, Text.words().toList(text));
+          assertEquals(size, Text.words().count(text));
+          assertEquals(expected, Text.lines().compose(Text.words()).toList(text));
+          assertEquals(
+              expected, Text.lines().collectParallel(text, Text.words(), Collectors.toList()));
+          assertEquals(
+              expected.subList(size / 3, 2 * size / 3),
+              Text.words().slice(size / 3, 2 * size / 3).toList(text));
+          assertEquals(
+              size == 0 ? List.of() : List.of(expected.get(size / 2)),
+              Text.words().onlyAt(size / 2).toList(text));
+        });
+  }
+
+  /** Tests that optimized updates of words agree with a persistent reference update. */
+  @Test
+  public void testWordsUpdateLaws() {
+    assertForAll(
+        new Text.Gen(),
+        text -> {
+          final Text expected =
+              Text.wordSetter().over(text, word -> word.clone().map(0, Character::toTitleCase));
+
+          final Text updated = text.clone();
+          Text.words().traverse(updated, word -> word.map(0, Character::toTitleCase));
+          assertEquals(expected, updated);
+
+          final Text parallelUpdated = text.clone();
+          Text.lines()
+              .collectParallel(
+                  parallelUpdated,
+                  Text.words(),
+                  Collectors.summingInt(word -> word.map(0, Character::toTitleCase).length()));
+          assertEquals(expected, parallelUpdated);
+
+          final Text asyncUpdated = text.clone();
+          Text.words()
+              .traverseAsync(
+                  asyncUpdated,
+                  word -> CompletableFuture.runAsync(() -> word.map(0, Character::toTitleCase)))
+              .join();
+          assertEquals(expected, asyncUpdated);
+
+          final Text charactersUpdated = text.clone();
+          Text.characters()
+              .onlyAt(0)
+              .traverse(charactersUpdated, c -> c.map(Character::toTitleCase));
+          final Text firstUpdated = text.clone().map(0, Character::toTitleCase);
+          assertEquals(firstUpdated, charactersUpdated);
+        });
+  }
+
+  /** Tests modifying regular expression matches and groups in place. */
+  @Test
+  public void testRegexMatchUpdate() {
+    final Text text = new Text("x=1, y=22, z=, w=333");
+    final Pattern assignment = Pattern.compile("(\\w)=(\\d+)?");
+    assertEquals(4, Text.matches(assignment).count(text));
+    assertEquals(
+        List.of(new Text("1"), new Text("22"), new Text("333")),
+        Text.groupsOf(assignment, 2).toList(text));
+    final long version = text.version();
+    Text.groupsOf(assignment, 1).traverse(text, name -> name.length());
+    assertEquals(version, text.version());
+    Text.groupsOf(assignment, 2)
+        .traverse(
+            text,
+            digits -> digits.replace(Integer.toString(2 * Integer.parseInt(digits.toString()))));
+    Text.groupsOf(assignment, 1).onlyAt(2).traverse(text, name -> name.append(name));
+    assertEquals(new Text("x=2, y=44, zz=, w=666"), text);
+  }
+
+  /** Tests that matches found on text agree with matches found on a copy of the text. */
+  @Test
+  public void testRegexMatchLaws() {
+    final Pattern capitalized = Pattern.compile("([A-Z])[a-z]*");
+    assertForAll(
+        new Text.Gen(),
+        text -> {
+          final Matcher matcher = capitalized.matcher(text.toString());
+          final Stream.Builder<Text> expected = Stream.builder();
+          while (matcher.find()) {
+            expected.add(new Text(matcher.group(1)));
+          }
+          assertStreamEquals(expected.build(), Text.groupsOf(capitalized, 1).partsOf(text));
+          final Text updated = text.clone();
+          Text.matches(capitalized).traverse(updated, word -> word.map(Character::toUpperCase));
+          assertEquals(
+              new Text(capitalized.matcher(text).replaceAll(m -> m.group().toUpperCase())),
+              updated);
+        });
+  }
+
+  /** Tests redacting keyword occurrences, including ones inside words and with whitespace. */
+  @Test
+  public void testKeywordOccurrences() {
+    final Traversal<Text, Text> occurrences =
+        Text.occurrences(List.of("he", "she", "hers", "his", "new york", "york"));
+    final Text text = new Text("ushers from new york and yorkshire, his");
+    assertEquals(
+        List.of(new Text("she"), new Text("new york"), new Text("york"), new Text("his")),
+        occurrences.toList(text));
+    final long version = text.version();
+    occurrences.traverse(text, occurrence -> occurrence.length());
+    assertEquals(version, text.version());
+    occurrences.traverse(text, occurrence -> occurrence.map(c -> '*'));
+    assertEquals(new Text("u***rs from ******** and ****shire, ***"), text);
+  }
+
+  /** Tests that keyword occurrences agree with a leftmost-longest search at every index. */
+  @Test
+  public void testKeywordOccurrenceLaws() {
+    final List<String> keywords = List.of("e", "ea", "eat", "t e", "at", "a\ta", "Ab");
+    final Keywords compiled = new Keywords(keywords);
+    assertForAll(
+        new Text.Gen(),
+        text -> {
+          final String chars = text.toString();
+          final Stream.Builder<Text> expected = Stream.builder();
+          int index = 0;
+          while (index < chars.length()) {
+            final int begin = index;
+            final int length =
+                keywords.stream()
+                    .filter(keyword -> chars.startsWith(keyword, begin))
+                    .mapToInt(String::length)
+                    .max()
+                    .orElse(0);
+            if (length > 0) {
+              expected.add(new Text(chars.substring(begin, begin + length)));
+            }
+            index += Math.max(1, length);
+          }
+          assertStreamEquals(expected.build(), Text.occurrences(compiled).partsOf(text));
+        });
+  }
+
+  /** Tests that texts read back from their binary format are equal to the written texts. */
+  @Test
+  public void testBinaryRoundTrip() {
+    assertForAll(
+        new Text.Gen(),
+        text -> {
+          final Text unicode = text.clone().append("na\u00efve \u2014 \u20ac");
+          assertEquals(Byte.BYTES + Integer.BYTES + text.length(), roundTrip(text));
+          assertEquals(Byte.BYTES + Integer.BYTES + 2 * unicode.length(), roundTrip(unicode));
+        });
+  }
+
+  /** Tests that recorded edits are compact and replay modifications on a copy. */
+  @Test
+  public void testRecordedEditsReplay() {
+    assertForAll(
+        new Text.Gen(),
+        text -> {
+          final Text replica = text.clone();
+          final List<TextEdit> edits = new ArrayList<>();
+          text.recordEdits(edits::add);
+          final long version = text.version();
+          Text.words().traverse(text, word -> word.map(c -> c));
+          assertEquals(version, text.version());
+          assertTrue(edits.isEmpty());
+          final int secondWordLength =
+              Text.words().onlyAt(1).toList(text).stream().mapToInt(Text::length).sum();
+          Text.words().onlyAt(1).traverse(text, word -> word.map(Character::toUpperCase));
+          assertTrue(edits.stream().allMatch(edit -> edit.getLength() <= secondWordLength));
+          Text.words().traverse(text, word -> word.map(0, Character::toTitleCase));
+          Text.characters().onlyAt(i -> i % 7 == 0).traverse(text, c -> c.replace("<>"));
+          text.insert(text.length() / 2, "inserted").delete(0, 3).append('!').append(text);
+          text.recordEdits(null).append('?');
+          replica.replay(edits);
+          assertEquals(text.subSequence(0, -1), replica);
+
+          final List<TextEdit> restored = new ArrayList<>();
+          try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final BinaryWriter out = new BinaryWriter(Channels.newChannel(bytes));
+            for (final TextEdit edit : edits) {
+              edit.writeTo(out);
+            }
+            out.flush();
+            final BinaryReader in =
+                new BinaryReader(
+                    Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())));
+            for (int index = 0; index < edits.size(); index++) {
+              restored.add(TextEdit.readFrom(in));
+            }
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+          assertEquals(edits.toString(), restored.toString());
+        });
+  }
+
+  /**
+   * Tests that text headers claiming more characters than the input contains are rejected before
+   * memory is allocated for them.
+   *
+   * @throws IOException if accessing the temporary file fails
+   */
+  @Test
+  public void testBinaryHeaderBounds() throws IOException {
+    // two-byte coder followed by the largest possible length and a single character
+    final byte[] header = {1, Byte.MAX_VALUE, -1, -1, -1, 0, 'a'};
+    assertThrows(
+        EOFException.class,
+        () ->
+            Text.readFrom(
+                new BinaryReader(Channels.newChannel(new ByteArrayInputStream(header)))));
+    final Path file = Files.createTempFile("text", ".bin");
+    try {
+      Files.write(file, header);
+      try (FileChannel channel = FileChannel.open(file)) {
+        assertEquals(
+            "malformed text header",
+            assertThrows(IOException.class, () -> Text.readFrom(new BinaryReader(channel)))
+                .getMessage());
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  private static int roundTrip(final Text text) {
+    try {
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      final BinaryWriter out = new BinaryWriter(Channels.newChannel(bytes));
+      text.writeTo(out);
+      out.flush();
+      final Text restored =
+          Text.readFrom(
+              new BinaryReader(Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray()))));
+      assertEquals(text, restored);
+      return bytes.size();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Tests traversing the words of many texts in a batch, sequentially and in parallel. */
+  @Test
+  public void testBatchTitleCaseConversion() {
+    final List<Text> texts =
+        Stream.generate(LOWER_CASE_WORDS_AMONG_COMPLEX_WHITESPACE::clone)
+            .limit(1000)
+            .collect(Collectors.toList());
+    final long[] count = {0};
+    Text.words().traverseAll(texts, word -> count[0]++);
+    assertEquals(6000, count[0]);
+
+    final List<Stream.Builder<Text>> sinks =
+        Text.words()
+            .traverseAllParallel(
+                texts,
+                () ->
+                    new Stream.Builder<Text>() {
+                      private final Stream.Builder<Text> words = Stream.builder();
+
+                      @Override
+                      public void accept(final Text word) {
+                        words.accept(word.map(0, Character::toTitleCase));
+                      }
+
+                      @Override
+                      public Stream<Text> build() {
+                        return words.build();
+                      }
+                    });
+    assertEquals(6000, sinks.stream().flatMap(Stream.Builder::build).count());
+    assertTrue(sinks.size() <= ForkJoinPool.getCommonPoolParallelism() + 1);
+    texts.forEach(text -> assertEquals(TITLE_CASE_WORDS_AMONG_COMPLEX_WHITESPACE, text));
+  }
+
+  /** Tests that parallel indexing of words in lines assigns indices in text order. */
+  @Test
+  public void testParallelIndexedWords() {
+    final Text text = new Text.Gen().get(20000);
+    final List<String> expected =
+        Text.lines().compose(Text.words()).toList(text).stream()
+            .map(Text::toString)
+            .collect(Collectors.toList());
+    final String[] indexed = new String[expected.size()];
+    Text.lines()
+        .traverseIndexedParallel(
+            text, Text.words(), word -> indexed[word.getIndex()] = word.getValue().toString());
+    assertEquals(expected, Arrays.asList(indexed));
+
+    Text.lines()
+        .traverseIndexedParallel(
+            text,
+            Text.words(),
+            word -> {
+              if (word.getIndex() % 2 == 1) {
+                word.getValue().map(0, Character::toTitleCase);
+              }
+            });
+    final List<Text> words = Text.lines().compose(Text.words()).toList(text);
+    for (int index = 0; index < words.size(); index++) {
+      final String word = expected.get(index);
+      assertEquals(
+          index % 2 == 1 ? Character.toTitleCase(word.charAt(0)) + word.substring(1) : word,
+          words.get(index).toString());
+    }
+  }
+
+  /**
+   * Tests that readers of concurrent text see consistent states while it is modified. The writer
+   * and the readers are released together by a barrier, so that reads overlap with writes.
+   *
+   * @throws Exception if waiting for the writer fails
+   */
+  @Test
+  public void testConcurrentTextReadersSeeSnapshots() throws Exception {
+    final ConcurrentText text = new ConcurrentText(LOWER_CASE_WORDS_AMONG_COMPLEX_WHITESPACE);
+    final CyclicBarrier start = new CyclicBarrier(2);
+    final CompletableFuture<?> writer =
+        CompletableFuture.runAsync(
+            () -> {
+              try {
+                start.await();
+              } catch (InterruptedException | BrokenBarrierException e) {
+                throw new CompletionException(e);
+              }
+              for (int round = 0; round < 200; round++) {
+                text.map(Character::toUpperCase);
+                text.map(Character::toLowerCase).append(" word");
+              }
+            });
+    start.await(10, TimeUnit.SECONDS);
+    final long[] words =
+        Stream.generate(() -> text)
+            .limit(2000)
+            .parallel()
+            .mapToLong(
+                shared -> {
+                  final List<Text> parts = Text.words().toList(shared);
+                  final String joined =
+                      parts.stream().map(Text::toString).collect(Collectors.joining());
+                  assertTrue(
+                      joined.equals(joined.toLowerCase()) || joined.equals(joined.toUpperCase()));
+                  return parts.size();
+                })
+            .toArray();
+    writer.join();
+    assertTrue(Arrays.stream(words).allMatch(n -> 6 <= n && n <= 206));
+    assertEquals(206, Text.words().count(text));
+
+    Text.words().traverse(text, word -> word.map(0, Character::toTitleCase));
+    assertEquals(TITLE_CASE_WORDS_AMONG_COMPLEX_WHITESPACE, text.subSequence(0, 33));
+  }
+
+  /**
+   * Tests that characters of concurrent text are read from a single snapshot and written back one
+   * after another, and that writing back fails if the text was modified by others in between.
+   * Reading characters of plain text fails once it was modified by others.
+   */
+  @Test
+  public void testConcurrentTextCharacters() {
+    final ConcurrentText text = new ConcurrentText(LOWER_CASE_WORDS_AMONG_COMPLEX_WHITESPACE);
+    final StringBuilder seen = new StringBuilder();
+    Text.characters()
+        .traverse(
+            text,
+            c -> {
+              seen.append(c);
+              c.map(Character::toUpperCase);
+            });
+    final String upper = LOWER_CASE_WORDS_AMONG_COMPLEX_WHITESPACE.toString().toUpperCase();
+    assertEquals(LOWER_CASE_WORDS_AMONG_COMPLEX_WHITESPACE.toString(), seen.toString());
+    assertEquals(upper, text.toString());
+
+    assertThrows(
+        ConcurrentModificationException.class,
+        () ->
+            Text.characters()
+                .traverse(
+                    text,
+                    c -> {
+                      text.append(c);
+                      c.map(Character::toLowerCase);
+                    }));
+    assertEquals(upper + "H", text.toString());
+    assertEquals(Byte.BYTES + Integer.BYTES + text.length(), roundTrip(text));
+
+    final Text plain = new Text(upper);
+    assertThrows(
+        ConcurrentModificationException.class,
+        () -> Text.characters().traverse(plain, c -> plain.append(c)));
+  }
+
+  /** Tests that write-back fails if concurrent text was modified after it was traversed. */
+  @Test
+  public void testConcurrentTextWriteBackConflict() {
+    final ConcurrentText text = new ConcurrentText(LOWER_CASE_WORDS_AMONG_COMPLEX_WHITESPACE);
+    assertThrows(
+        ConcurrentModificationException.class,
+        () ->
+            Text.words()
+                .onlyAt(0)
+                .traverse(text, word -> text.append(word.map(Character::toUpperCase))));
+    assertEquals(new Text(LOWER_CASE_WORDS_AMONG_COMPLEX_WHITESPACE + "HELLO"), text);
+  }
+
   /** Tests that lines traversal traverses the correct number of lines. */
   @Test
   public void testLinesCount() {
@@ -97,4 +639,249 @@ public class Tests {
     nameWords.traverse(text, word -> word.map(0, Character::toTitleCase));
     assertEquals(CSV_TABLE, text);
   }
+
+  /** Tests converting every word to title case without mutating the original text. */
+  @Test
+  public void testPersistentTitleCaseConversion() {
+    final Text text = LOWER_CASE_WORDS_AMONG_COMPLEX_WHITESPACE.clone();
+    final Text updated =
+        Text.wordSetter().over(text, word -> word.clone().map(0, Character::toTitleCase));
+    assertEquals(LOWER_CASE_WORDS_AMONG_COMPLEX_WHITESPACE, text);
+    assertEquals(TITLE_CASE_WORDS_AMONG_COMPLEX_WHITESPACE, updated);
+    assertSame(text, Text.wordSetter().over(text, word -> word));
+  }
+
+  /** Tests that word updates of ropes agree with word updates of texts. */
+  @Test
+  public void testRopeWordSetter() {
+    assertForAll(
+        new Text.Gen(),
+        text -> {
+          final Rope rope = Rope.of(text);
+          assertEquals(text.toString(), rope.toString());
+          assertSame(rope, Rope.wordSetter().over(rope, word -> word));
+          final Rope updated =
+              Rope.wordSetter()
+                  .over(rope, word -> Rope.of(new Text(word).map(0, Character::toTitleCase)));
+          assertEquals(
+              Text.wordSetter()
+                  .over(text, word -> word.clone().map(0, Character::toTitleCase))
+                  .toString(),
+              updated.toString());
+          assertEquals(text.toString(), rope.toString());
+        });
+  }
+
+  /** Tests that repeated replacements of ropes agree with replacements of strings. */
+  @Test
+  public void testRopeReplacements() {
+    final StringBuilder expected = new StringBuilder("rope");
+    Rope rope = Rope.of(expected);
+    for (int round = 0; round < 2000; round++) {
+      final int begin = round * 7 % (expected.length() + 1);
+      final int end = Math.min(expected.length(), begin + round % 3);
+      final String chars = round % 5 == 0 ? "" : "r" + round;
+      expected.replace(begin, end, chars);
+      rope = rope.replace(begin, end, round % 2 == 0 ? chars : Rope.of(chars));
+    }
+    assertEquals(expected.toString(), rope.toString());
+    assertEquals(expected.length(), rope.length());
+    assertEquals(expected.charAt(1234), rope.charAt(1234));
+    assertEquals(expected.substring(100, 2000), rope.subSequence(100, 2000).toString());
+    assertEquals(Rope.of(expected), rope);
+    assertEquals(expected.toString().hashCode(), rope.hashCode());
+    assertTrue(!rope.equals(expected));
+    assertThrows(IndexOutOfBoundsException.class, () -> Rope.of("").charAt(0));
+  }
+
+  /**
+   * Tests that words processed asynchronously are written back after processing completes and that
+   * no more than the given number of words is processed concurrently.
+   */
+  @Test
+  public void testAsyncTitleCaseConversion() {
+    final int maxConcurrency = 2;
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    final Executor delayed = CompletableFuture.delayedExecutor(5, TimeUnit.MILLISECONDS);
+    final Text text = LOWER_CASE_WORDS_AMONG_COMPLEX_WHITESPACE.clone();
+    Text.words()
+        .traverseAsync(
+            text,
+            word -> {
+              maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+              return CompletableFuture.runAsync(
+                  () -> {
+                    word.map(0, Character::toTitleCase);
+                    running.decrementAndGet();
+                  },
+                  delayed);
+            },
+            ForkJoinPool.commonPool(),
+            maxConcurrency)
+        .join();
+    assertEquals(TITLE_CASE_WORDS_AMONG_COMPLEX_WHITESPACE, text);
+    assertTrue(maxRunning.get() <= maxConcurrency);
+  }
+
+  /**
+   * Tests that a publisher of lines delivers each line only after it was requested and completes
+   * after the last line.
+   *
+   * @throws InterruptedException if interrupted while waiting for lines
+   */
+  @Test
+  public void testLinesPublisherHonorsDemand() throws InterruptedException {
+    final List<Thread> threads = new ArrayList<>();
+    final LineSubscriber subscriber = new LineSubscriber();
+    Text.lines()
+        .publisherOf(TITLE_CASE_WORDS_AMONG_COMPLEX_WHITESPACE.clone(), threadPerTask(threads))
+        .subscribe(subscriber);
+    for (final Text line : Text.lines().toList(TITLE_CASE_WORDS_AMONG_COMPLEX_WHITESPACE)) {
+      subscriber.request(1);
+      assertEquals(line, subscriber.received.poll(1, TimeUnit.SECONDS));
+    }
+    threads.get(0).join();
+    subscriber.done.join();
+    assertTrue(subscriber.received.isEmpty());
+  }
+
+  /**
+   * Tests that publishers of lines stop traversing when a subscription is cancelled, when more
+   * lines are requested than can be counted, when an invalid number of lines is requested, when
+   * the traversing thread is interrupted, and when the traversal fails.
+   *
+   * @throws InterruptedException if interrupted while waiting for traversing threads
+   */
+  @Test
+  public void testLinesPublisherCancellation() throws InterruptedException {
+    final List<Thread> threads = new ArrayList<>();
+    final Executor executor = threadPerTask(threads);
+    final Text text = LOWER_CASE_WORDS_AMONG_COMPLEX_WHITESPACE.clone();
+
+    final LineSubscriber cancelling =
+        new LineSubscriber() {
+          @Override
+          public void onNext(final Text line) {
+            line.map(0, Character::toTitleCase);
+            subscription.join().cancel();
+          }
+        };
+    Text.lines().publisherOf(text, executor).subscribe(cancelling);
+    cancelling.request(Long.MAX_VALUE);
+    cancelling.request(Long.MAX_VALUE);
+    threads.get(0).join();
+    assertEquals(LOWER_CASE_WORDS_AMONG_COMPLEX_WHITESPACE, text);
+    assertTrue(!cancelling.done.isDone());
+
+    final LineSubscriber invalid = new LineSubscriber();
+    Text.lines().publisherOf(text, executor).subscribe(invalid);
+    invalid.request(0);
+    threads.get(1).join();
+    assertThrows(IllegalArgumentException.class, () -> rethrowCause(invalid.done));
+
+    final LineSubscriber interrupted = new LineSubscriber();
+    Text.lines().publisherOf(text, executor).subscribe(interrupted);
+    while (threads.get(2).getState() != Thread.State.WAITING) {
+      Thread.onSpinWait();
+    }
+    threads.get(2).interrupt();
+    threads.get(2).join();
+    assertTrue(!interrupted.done.isDone());
+
+    final LineSubscriber failed = new LineSubscriber();
+    Text.lines()
+        .<Text>map(
+            line -> {
+              throw new IllegalStateException();
+            })
+        .publisherOf(text, executor)
+        .subscribe(failed);
+    failed.request(1);
+    threads.get(3).join();
+    assertThrows(IllegalStateException.class, () -> rethrowCause(failed.done));
+  }
+
+  private static Executor threadPerTask(final List<Thread> threads) {
+    return task -> {
+      final Thread thread = new Thread(task);
+      threads.add(thread);
+      thread.start();
+    };
+  }
+
+  private static void rethrowCause(final CompletableFuture<?> future) throws Throwable {
+    try {
+      future.join();
+    } catch (CompletionException e) {
+      throw e.getCause();
+    }
+  }
+
+  /** Subscriber recording received lines, failing if it receives lines it did not request. */
+  private static class LineSubscriber implements Flow.Subscriber<Text> {
+    final CompletableFuture<Flow.Subscription> subscription = new CompletableFuture<>();
+    final BlockingQueue<Text> received = new LinkedBlockingQueue<>();
+    final CompletableFuture<Void> done = new CompletableFuture<>();
+    private final AtomicLong requested = new AtomicLong();
+
+    void request(final long count) {
+      requested.addAndGet(count);
+      subscription.join().request(count);
+    }
+
+    @Override
+    public void onSubscribe(final Flow.Subscription s) {
+      subscription.complete(s);
+    }
+
+    @Override
+    public void onNext(final Text line) {
+      if (requested.decrementAndGet() < 0) {
+        done.completeExceptionally(new IllegalStateException("unrequested line: " + line));
+      }
+      received.add(line);
+    }
+
+    @Override
+    public void onError(final Throwable error) {
+      done.completeExceptionally(error);
+    }
+
+    @Override
+    public void onComplete() {
+      done.complete(null);
+    }
+  }
+
+  /**
+   * Tests that traversal runs and group write-back are recorded as flight recorder events.
+   *
+   * @throws IOException if the recording cannot be dumped
+   */
+  @Test
+  public void testFlightRecorderEvents() throws IOException {
+    final Path dump = Files.createTempFile("text", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable("sebfisch.util.Traverse").withThreshold(Duration.ZERO);
+      recording.enable("sebfisch.text.TextMutation").withThreshold(Duration.ZERO);
+      recording.start();
+      Text.words().traverse(LOWER_CASE_WORDS.clone(), word -> word.map(0, Character::toTitleCase));
+      recording.stop();
+      recording.dump(dump);
+      final List<RecordedEvent> events =
+          RecordingFile.readAllEvents(dump).stream()
+              .filter(e -> e.getEventType().getName().startsWith("sebfisch"))
+              .sorted(Comparator.comparing(RecordedEvent::getEndTime))
+              .collect(Collectors.toList());
+      assertEquals(2, events.size());
+      final RecordedEvent groups = events.get(0);
+      assertEquals("groups", groups.getString("operation"));
+      assertEquals(3, groups.getInt("parts"));
+      assertEquals(LOWER_CASE_WORDS.length(), groups.getInt("length"));
+      assertEquals(2, events.get(1).getLong("parts"));
+    } finally {
+      Files.delete(dump);
+    }
+  }
 }
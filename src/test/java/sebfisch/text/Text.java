@@ -1,15 +1,43 @@
 package sebfisch.text;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
 import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import sebfisch.test.gen.random.SizedGenerator;
+import sebfisch.util.BinaryReader;
+import sebfisch.util.BinaryWriter;
+import sebfisch.util.Setter;
 import sebfisch.util.Traversal;
+import sebfisch.util.Versioned;
 
 /** Mutable text representation extending string buffers with additional functionality. */
-public class Text implements Cloneable, Serializable, Appendable, CharSequence {
+public class Text implements Cloneable, Serializable, Appendable, CharSequence, Versioned {
+
+  private static final Traversal<Text, Text> CHARACTERS =
+      new Traversal.Elements<>(Text::characterList);
+  private static final Traversal<Text, Text> WORDS = groups(Character::isWhitespace);
+  private static final Traversal<Text, Text> LINES = groups(Text::isLineTerminator);
+  private static final int CHUNK_SIZE = 1 << 13;
+  private static final byte LATIN1 = 0;
+  private static final byte UTF16 = 1;
 
   private final StringBuffer contents;
+  private long version;
+  private transient Consumer<? super TextEdit> edits;
 
   /** Creates mutable empty text. */
   public Text() {
@@ -35,24 +63,44 @@ public class Text implements Cloneable, Serializable, Appendable, CharSequence {
    * @return valid index
    */
   private int validIndex(final int index) {
-    return Math.max(0, Math.min(length(), index < 0 ? length() + index : index));
+    return validIndex(index, length());
+  }
+
+  /**
+   * Index arithmetic like {@link #validIndex(int)} for the given length.
+   *
+   * @param index index to convert
+   * @param length length of the text
+   * @return valid index
+   */
+  static int validIndex(final int index, final int length) {
+    return Math.max(0, Math.min(length, index < 0 ? length + index : index));
   }
 
   @Override
   public Text append(final char c) {
+    final int offset = length();
     contents.append(c);
+    version++;
+    record(offset, 0, String.valueOf(c));
     return this;
   }
 
   @Override
   public Text append(final CharSequence cs) {
+    final int offset = length();
     contents.append(cs);
+    version++;
+    recordAppended(offset);
     return this;
   }
 
   @Override
   public Text append(final CharSequence cs, final int begin, final int end) {
+    final int offset = length();
     contents.append(cs, validIndex(begin), validIndex(end));
+    version++;
+    recordAppended(offset);
     return this;
   }
 
@@ -87,6 +135,11 @@ public class Text implements Cloneable, Serializable, Appendable, CharSequence {
     return contents.toString();
   }
 
+  @Override
+  public long version() {
+    return version;
+  }
+
   @Override
   public Text clone() {
     return subSequence(0, length());
@@ -107,6 +160,100 @@ public class Text implements Cloneable, Serializable, Appendable, CharSequence {
     return toString().equals(chars.toString());
   }
 
+  /**
+   * Writes this text in a compact binary format: a coder byte and the number of characters,
+   * followed by one byte per character if all characters are Latin-1 and two bytes otherwise.
+   * Characters are copied from the text in chunks.
+   *
+   * @param out binary output
+   * @throws IOException if writing fails
+   */
+  public void writeTo(final BinaryWriter out) throws IOException {
+    write(contents, out);
+  }
+
+  /**
+   * Writes the given characters in the format of {@link #writeTo(BinaryWriter)}. Only the given
+   * characters are accessed, so that subclasses can write a snapshot without holding locks.
+   *
+   * @param contents characters of a text, a string or a string buffer
+   * @param out binary output
+   * @throws IOException if writing fails
+   */
+  static void write(final CharSequence contents, final BinaryWriter out) throws IOException {
+    final int length = contents.length();
+    final char[] chars = new char[Math.min(length, CHUNK_SIZE)];
+    boolean latin1 = true;
+    for (int begin = 0; latin1 && begin < length; begin += chars.length) {
+      final int count = Math.min(chars.length, length - begin);
+      getChars(contents, begin, begin + count, chars);
+      for (int index = 0; latin1 && index < count; index++) {
+        latin1 = chars[index] <= 0xFF;
+      }
+    }
+    out.putByte(latin1 ? LATIN1 : UTF16).putInt(length);
+    final byte[] bytes = new byte[latin1 ? chars.length : 0];
+    for (int begin = 0; begin < length; begin += chars.length) {
+      final int count = Math.min(chars.length, length - begin);
+      getChars(contents, begin, begin + count, chars);
+      if (latin1) {
+        for (int index = 0; index < count; index++) {
+          bytes[index] = (byte) chars[index];
+        }
+        out.putBytes(bytes, 0, count);
+      } else {
+        out.putChars(chars, 0, count);
+      }
+    }
+  }
+
+  private static void getChars(
+      final CharSequence contents, final int begin, final int end, final char[] chars) {
+    if (contents instanceof StringBuffer) {
+      ((StringBuffer) contents).getChars(begin, end, chars, 0);
+    } else {
+      contents.toString().getChars(begin, end, chars, 0);
+    }
+  }
+
+  /**
+   * Reads text written with {@link #writeTo(BinaryWriter)}. The length in the header is checked
+   * against the remaining input if its size is known.
+   *
+   * @param in binary input
+   * @return text with the read characters
+   * @throws IOException if reading fails or the input is malformed
+   */
+  public static Text readFrom(final BinaryReader in) throws IOException {
+    final byte coder = in.getByte();
+    final int length = in.getInt();
+    final long remaining = in.remaining();
+    if ((coder != LATIN1 && coder != UTF16)
+        || length < 0
+        || remaining >= 0
+            && remaining < (long) length * (coder == LATIN1 ? Byte.BYTES : Character.BYTES)) {
+      throw new IOException("malformed text header");
+    }
+    final Text result = new Text();
+    // without a known input size, capacity grows with the characters actually read
+    result.contents.ensureCapacity(remaining < 0 ? Math.min(length, CHUNK_SIZE) : length);
+    final char[] chars = new char[Math.min(length, CHUNK_SIZE)];
+    final byte[] bytes = new byte[coder == LATIN1 ? chars.length : 0];
+    for (int begin = 0; begin < length; begin += chars.length) {
+      final int count = Math.min(chars.length, length - begin);
+      if (coder == LATIN1) {
+        in.getBytes(bytes, 0, count);
+        for (int index = 0; index < count; index++) {
+          chars[index] = (char) (bytes[index] & 0xFF);
+        }
+      } else {
+        in.getChars(chars, 0, count);
+      }
+      result.contents.append(chars, 0, count);
+    }
+    return result;
+  }
+
   /**
    * Deletes the text contents.
    *
@@ -123,7 +270,10 @@ public class Text implements Cloneable, Serializable, Appendable, CharSequence {
    * @return this text, mutated
    */
   public Text delete(final int index) {
-    contents.deleteCharAt(validIndex(index));
+    final int validIndex = validIndex(index);
+    contents.deleteCharAt(validIndex);
+    version++;
+    record(validIndex, 1, "");
     return this;
   }
 
@@ -135,7 +285,11 @@ public class Text implements Cloneable, Serializable, Appendable, CharSequence {
    * @return this text, mutated
    */
   public Text delete(final int begin, final int end) {
-    contents.delete(validIndex(begin), validIndex(end));
+    final int validBegin = validIndex(begin);
+    final int validEnd = validIndex(end);
+    contents.delete(validBegin, validEnd);
+    version++;
+    record(validBegin, validEnd - validBegin, "");
     return this;
   }
 
@@ -148,6 +302,8 @@ public class Text implements Cloneable, Serializable, Appendable, CharSequence {
    */
   public Text insert(final int offset, final CharSequence chars) {
     contents.insert(offset, chars);
+    version++;
+    record(offset, 0, chars);
     return this;
   }
 
@@ -159,7 +315,10 @@ public class Text implements Cloneable, Serializable, Appendable, CharSequence {
    * @return this text, mutated
    */
   public Text replace(final int index, final char c) {
-    contents.setCharAt(validIndex(index), c);
+    final int validIndex = validIndex(index);
+    contents.setCharAt(validIndex, c);
+    version++;
+    record(validIndex, 1, String.valueOf(c));
     return this;
   }
 
@@ -194,8 +353,104 @@ public class Text implements Cloneable, Serializable, Appendable, CharSequence {
    */
   public Text replace(final int begin, final int end, final CharSequence chars) {
     final int validBegin = validIndex(begin);
-    contents.delete(validBegin, validIndex(end));
+    final int validEnd = validIndex(end);
+    contents.delete(validBegin, validEnd);
     contents.insert(validBegin, chars);
+    version++;
+    record(validBegin, validEnd - validBegin, chars);
+    return this;
+  }
+
+  /**
+   * Records modifications of this text as edits passed to the given consumer, or stops recording
+   * if it is {@code null}. Every primitive modification is recorded as a single edit, and
+   * traversals write back modified parts with a single edit covering the region between the first
+   * and the last modified part. Replaying recorded edits with {@link #replay(List)} on a copy taken
+   * when recording started yields the same contents. Copies of this text do not record edits.
+   *
+   * @param edits consumer of edits, called by the modifying thread
+   * @return this text
+   */
+  public Text recordEdits(final Consumer<? super TextEdit> edits) {
+    this.edits = edits;
+    return this;
+  }
+
+  private void record(final int offset, final int length, final CharSequence replacement) {
+    if (edits != null) {
+      edits.accept(new TextEdit(offset, length, replacement.toString()));
+    }
+  }
+
+  /** Records appended characters, which may have been read from this text while appending. */
+  private void recordAppended(final int offset) {
+    if (edits != null) {
+      edits.accept(new TextEdit(offset, 0, contents.substring(offset)));
+    }
+  }
+
+  /**
+   * Applies the given function to the characters of this text and their version. Traversals read
+   * texts with this method, so that subclasses can provide a consistent state for bulk reads. The
+   * characters may be the contents of this text, which are only valid while its version does not
+   * change.
+   *
+   * @param <T> type of the result
+   * @param read function reading characters, which must not be modified
+   * @return result of the function
+   */
+  <T> T read(final BiFunction<CharSequence, Long, T> read) {
+    return read.apply(contents, version);
+  }
+
+  /**
+   * Runs an update computed from the characters of this text at the given version. Traversals
+   * write back parts with this method, so that subclasses can run updates exclusively and check
+   * that the text was not modified since it was read.
+   *
+   * @param version version of the characters the update was computed from
+   * @param update update of this text
+   * @return this text, mutated
+   */
+  Text writeBack(final long version, final Supplier<Text> update) {
+    return update.get();
+  }
+
+  /**
+   * Applies the given edits in order. Runs of edits at ascending, non-overlapping offsets are
+   * combined and applied in one pass which copies the text between the first and the last edit of
+   * the run, so that applying edits recorded for character updates does not move the rest of the
+   * text for every character.
+   *
+   * @param edits edits recorded for a text with the contents of this text
+   * @return this text, mutated
+   */
+  public Text replay(final List<TextEdit> edits) {
+    int first = 0;
+    while (first < edits.size()) {
+      final int begin = edits.get(first).getOffset();
+      final StringBuilder region = new StringBuilder();
+      int end = begin;
+      int shift = 0;
+      int next = first;
+      while (next < edits.size()) {
+        final TextEdit edit = edits.get(next);
+        final int offset = edit.getOffset() - shift;
+        if (offset < end || offset + edit.getLength() > length()) {
+          break;
+        }
+        region.append(contents, end, offset).append(edit.getReplacement());
+        end = offset + edit.getLength();
+        shift += edit.getReplacement().length() - edit.getLength();
+        next++;
+      }
+      if (next == first) {
+        edits.get(first++).applyTo(this);
+      } else {
+        replace(begin, end, region);
+        first = next;
+      }
+    }
     return this;
   }
 
@@ -229,6 +484,8 @@ public class Text implements Cloneable, Serializable, Appendable, CharSequence {
    * @return this text, mutated
    */
   public Text filter(final int begin, final int end, final CharPredicate pred) {
+    final JfrTextMutation event = new JfrTextMutation();
+    event.begin();
     int index = validIndex(begin);
     int validEnd = validIndex(end);
 
@@ -236,11 +493,14 @@ public class Text implements Cloneable, Serializable, Appendable, CharSequence {
       if (pred.test(charAt(index))) {
         index++;
       } else {
+        event.parts++;
+        event.copied += length() - index - 1;
         delete(index);
         validEnd--;
       }
     }
 
+    commit(event, "filter");
     return this;
   }
 
@@ -315,19 +575,133 @@ public class Text implements Cloneable, Serializable, Appendable, CharSequence {
    */
   public Text flatMap(
       final int begin, final int end, final CharFunction<? extends CharSequence> fun) {
+    final JfrTextMutation event = new JfrTextMutation();
+    event.begin();
     int index = validIndex(begin);
     int validEnd = validIndex(end);
 
     while (index < validEnd) {
       final CharSequence replacement = fun.apply(charAt(index));
+      event.parts++;
+      event.copied += replacement.length() + 2L * (length() - index - 1);
       replace(index, replacement);
       index += replacement.length();
       validEnd += replacement.length() - 1;
     }
 
+    commit(event, "flatMap");
+    return this;
+  }
+
+  private void commit(final JfrTextMutation event, final String operation) {
+    event.commit(operation, length());
+  }
+
+  /**
+   * Replaces this texts contents with the given groups. Only the characters between the common
+   * prefix and suffix of the old and new contents are replaced, and unchanged contents are not
+   * replaced at all.
+   *
+   * @param grouping groups to assemble
+   * @return this text, mutated
+   */
+  private Text replaceGroups(final Grouping grouping) {
+    return writeBack(grouping.version, () -> replaceGroups(grouping.parts));
+  }
+
+  private Text replaceGroups(final List<Text> groups) {
+    final JfrTextMutation event = new JfrTextMutation();
+    event.begin();
+    final StringBuilder assembled = new StringBuilder(length());
+    groups.forEach(assembled::append);
+    final int common = Math.min(length(), assembled.length());
+    int prefix = 0;
+    while (prefix < common && contents.charAt(prefix) == assembled.charAt(prefix)) {
+      prefix++;
+    }
+    int suffix = 0;
+    while (suffix < common - prefix
+        && contents.charAt(length() - suffix - 1)
+            == assembled.charAt(assembled.length() - suffix - 1)) {
+      suffix++;
+    }
+    if (prefix + suffix == length() && length() == assembled.length()) {
+      return this;
+    }
+    replace(prefix, length() - suffix, assembled.subSequence(prefix, assembled.length() - suffix));
+    event.parts = groups.size();
+    event.copied = length();
+    commit(event, "groups");
     return this;
   }
 
+  /**
+   * Returns a list view of the characters in this text. Elements are texts containing a single
+   * character, setting an element replaces the character at its index.
+   *
+   * @return list view of characters
+   */
+  private List<Text> characterList() {
+    return read(CharacterList::new);
+  }
+
+  /**
+   * List view of the characters in a text, read at a given version. Characters are accessed in the
+   * characters provided by {@link #read(BiFunction)} without copying them. If these are the
+   * contents of this text, they are only read while the text has the version they were read at, or
+   * the version after a character was set by the list. Setting a character writes it back at that
+   * version.
+   */
+  private final class CharacterList extends AbstractList<Text> implements RandomAccess {
+    private final CharSequence chars;
+    private final boolean live;
+    private long version;
+
+    CharacterList(final CharSequence chars, final long version) {
+      this.chars = chars;
+      this.live = chars == contents;
+      this.version = version;
+    }
+
+    @Override
+    public Text get(final int index) {
+      if (live && version != Text.this.version) {
+        throw new ConcurrentModificationException("text modified since it was traversed");
+      }
+      Objects.checkIndex(index, chars.length());
+      return new Text(String.valueOf(chars.charAt(index)));
+    }
+
+    @Override
+    public Text set(final int index, final Text element) {
+      final Text old = get(index);
+      writeBack(
+          version,
+          () -> {
+            replace(index, element);
+            version = version();
+            return Text.this;
+          });
+      return old;
+    }
+
+    @Override
+    public int size() {
+      return chars.length();
+    }
+  }
+
+  /**
+   * Returns a traversal for the characters in text. Traversed parts are texts containing a single
+   * character which are written back if modified. Characters at specific indices are accessed
+   * directly. Modified parts should contain a single character to keep subsequent indices valid.
+   *
+   * @return traversal for characters
+   */
+  public static Traversal<Text, Text> characters() {
+    return CHARACTERS;
+  }
+
   /**
    * Groups characters in this text based on the given predicate. The result list contains non-empty
    * texts where all characters either do or do not satisfy the given predicate. For subsequent
@@ -337,13 +711,17 @@ public class Text implements Cloneable, Serializable, Appendable, CharSequence {
    * @return list of text groups
    */
   public List<Text> group(final CharPredicate pred) {
+    return read((chars, version) -> group(chars, pred));
+  }
+
+  private static List<Text> group(final CharSequence chars, final CharPredicate pred) {
     final List<Text> result = new ArrayList<>();
     Text nextGroup = new Text();
     char nextChar;
-    for (int index = 0; index < length(); index++) {
-      nextChar = charAt(index);
+    for (int index = 0; index < chars.length(); index++) {
+      nextChar = chars.charAt(index);
       nextGroup.append(nextChar);
-      if (index + 1 < length() && pred.test(nextChar) != pred.test(charAt(index + 1))) {
+      if (index + 1 < chars.length() && pred.test(nextChar) != pred.test(chars.charAt(index + 1))) {
         result.add(nextGroup);
         nextGroup = new Text();
       }
@@ -352,18 +730,226 @@ public class Text implements Cloneable, Serializable, Appendable, CharSequence {
     return result;
   }
 
+  private static long versionOf(final List<Text> parts) {
+    long sum = 0;
+    for (final Text part : parts) {
+      sum += part.version();
+    }
+    return sum;
+  }
+
   /**
    * Returns a traversal for grouping text. The given predicate characterizes delimiting characters.
-   * Traversed groups are never empty and contain those characters between delimiters.
+   * Traversed groups are never empty and contain those characters between delimiters. The text is
+   * only reassembled if a group was modified. Slices of groups are found by scanning the text only
+   * up to the end of the slice, and only modified groups of a slice are written back.
    *
    * @param isDelimiting predicate on characters
    * @return traversal for delimited groups
    */
   public static Traversal<Text, Text> groups(final CharPredicate isDelimiting) {
+    return new Groups(isDelimiting);
+  }
+
+  /**
+   * Traversal for delimited groups.
+   *
+   * @see Text#groups(CharPredicate)
+   */
+  private static final class Groups implements Traversal<Text, Text> {
+    private final CharPredicate isDelimiting;
+    private final Traversal<Text, Text> traversal;
+
+    Groups(final CharPredicate isDelimiting) {
+      this.isDelimiting = isDelimiting;
+      this.traversal =
+          new Traversal.For<Text>()
+              .map(
+                  text ->
+                      text.read(
+                          (chars, version) -> new Grouping(version, group(chars, isDelimiting))),
+                  Text::replaceGroups,
+                  grouping -> versionOf(grouping.parts))
+              .flatMap(grouping -> grouping.parts)
+              .filter(part -> !isDelimiting.test(part.charAt(0)));
+    }
+
+    @Override
+    public Consumer<Text> apply(final Consumer<Text> ct) {
+      return traversal.apply(ct);
+    }
+
+    @Override
+    public Traversal<Text, Text> slice(final int from, final int to) {
+      return spans(chars -> groupBounds(chars, isDelimiting, from, to));
+    }
+
+    @Override
+    public Traversal<Text, Text> onlyAt(final int index) {
+      return slice(index, index + 1);
+    }
+  }
+
+  /** Groups of a text together with the version of the text they were computed from. */
+  private static final class Grouping {
+    private final long version;
+    private final List<Text> parts;
+
+    Grouping(final long version, final List<Text> parts) {
+      this.version = version;
+      this.parts = parts;
+    }
+  }
+
+  /**
+   * Computes the bounds of delimited groups with indices in the given range. Scanning stops at the
+   * end of the last group in range.
+   *
+   * @param chars characters to scan
+   * @param isDelimiting predicate on characters
+   * @param from index of the first group, inclusive
+   * @param to index of the last group, exclusive
+   * @return begin and end offsets of groups in range
+   */
+  private static int[] groupBounds(
+      final CharSequence chars, final CharPredicate isDelimiting, final int from, final int to) {
+    final IntStream.Builder bounds = IntStream.builder();
+    final int length = chars.length();
+    int index = 0;
+    for (int group = 0; group < to; group++) {
+      while (index < length && isDelimiting.test(chars.charAt(index))) {
+        index++;
+      }
+      if (index == length) {
+        break;
+      }
+      final int begin = index;
+      while (index < length && !isDelimiting.test(chars.charAt(index))) {
+        index++;
+      }
+      if (group >= from) {
+        bounds.add(begin).add(index);
+      }
+    }
+    return bounds.build().toArray();
+  }
+
+  /**
+   * Returns a traversal for the ranges of text computed by the given function. Modified parts are
+   * written back in one pass which copies the text between the first and last modified range.
+   *
+   * @param find function computing begin and end offsets of ascending, non-overlapping ranges
+   * @return traversal for ranges of text
+   */
+  private static Traversal<Text, Text> spans(final Function<CharSequence, int[]> find) {
     return new Traversal.For<Text>()
-        .map(text -> text.group(isDelimiting), (text, parts) -> text.delete().append(parts))
-        .flatMap(parts -> parts)
-        .filter(part -> !isDelimiting.test(part.charAt(0)));
+        .map(
+            text -> text.read((chars, version) -> new Spans(chars, version, find.apply(chars))),
+            Text::splice,
+            Spans::version)
+        .flatMap(spans -> spans.parts);
+  }
+
+  /** Parts of a text at given ranges together with their initial versions. */
+  private static final class Spans {
+    private final long textVersion;
+    private final int[] bounds;
+    private final List<Text> parts;
+    private final long[] versions;
+
+    Spans(final CharSequence chars, final long textVersion, final int[] bounds) {
+      this.textVersion = textVersion;
+      this.bounds = bounds;
+      this.parts = new ArrayList<>(bounds.length / 2);
+      this.versions = new long[bounds.length / 2];
+      for (int index = 0; index < versions.length; index++) {
+        final Text part = new Text(chars.subSequence(bounds[2 * index], bounds[2 * index + 1]));
+        parts.add(part);
+        versions[index] = part.version();
+      }
+    }
+
+    long version() {
+      long sum = 0;
+      for (final Text part : parts) {
+        sum += part.version();
+      }
+      return sum;
+    }
+
+    boolean isModified(final int index) {
+      return parts.get(index).version() != versions[index];
+    }
+  }
+
+  /**
+   * Replaces ranges of this text with modified parts. Only the region between the first and the
+   * last modified part is rebuilt and replaced.
+   *
+   * @param spans parts at ranges of this text
+   * @return this text, mutated
+   */
+  private Text splice(final Spans spans) {
+    int first = 0;
+    while (first < spans.versions.length && !spans.isModified(first)) {
+      first++;
+    }
+    int last = spans.versions.length - 1;
+    while (last > first && !spans.isModified(last)) {
+      last--;
+    }
+    if (first > last) {
+      return this;
+    }
+    final int from = first;
+    final int to = last;
+    return writeBack(spans.textVersion, () -> splice(spans, from, to));
+  }
+
+  private Text splice(final Spans spans, final int first, final int last) {
+    final StringBuilder region = new StringBuilder();
+    for (int index = first; index <= last; index++) {
+      if (index > first) {
+        region.append(contents, spans.bounds[2 * index - 1], spans.bounds[2 * index]);
+      }
+      region.append(spans.parts.get(index));
+    }
+    return replace(spans.bounds[2 * first], spans.bounds[2 * last + 1], region);
+  }
+
+  /**
+   * Returns a setter for grouping text without mutating it. Groups are found by scanning the text
+   * once, and if a group changes, a new text is assembled from the changed groups and the
+   * characters between them in one pass. The original text is returned if no group changes. Texts
+   * are flat, so updates copy the whole text; {@link Rope#groupSetter} shares unchanged characters.
+   *
+   * @param isDelimiting predicate on characters
+   * @return setter for delimited groups
+   */
+  public static Setter<Text, Text> groupSetter(final CharPredicate isDelimiting) {
+    return ut ->
+        text ->
+            text.read(
+                (chars, version) -> {
+                  final int[] bounds = groupBounds(chars, isDelimiting, 0, Integer.MAX_VALUE);
+                  StringBuilder result = null;
+                  int copied = 0;
+                  for (int index = 0; index < bounds.length; index += 2) {
+                    final Text group =
+                        new Text(chars.subSequence(bounds[index], bounds[index + 1]));
+                    final Text newGroup = ut.apply(group);
+                    if (newGroup != group) {
+                      if (result == null) {
+                        result = new StringBuilder(chars.length());
+                      }
+                      result.append(chars, copied, bounds[index]).append(newGroup);
+                      copied = bounds[index + 1];
+                    }
+                  }
+                  return result == null
+                      ? text
+                      : new Text(result.append(chars, copied, chars.length()));
+                });
   }
 
   /**
@@ -378,21 +964,158 @@ public class Text implements Cloneable, Serializable, Appendable, CharSequence {
   }
 
   /**
-   * Returns a traversal for collecting or modifying words in text.
+   * Returns a traversal for collecting or modifying words in text. The returned traversal is
+   * shared between calls.
    *
    * @return traversal for words
    */
   public static Traversal<Text, Text> words() {
-    return groups(Character::isWhitespace);
+    return WORDS;
   }
 
   /**
-   * Returns a traversal for collecting or modifying lines in text.
+   * Returns a setter for updating words in text without mutating it.
+   *
+   * @return setter for words
+   */
+  public static Setter<Text, Text> wordSetter() {
+    return groupSetter(Character::isWhitespace);
+  }
+
+  /**
+   * Returns a traversal for collecting or modifying lines in text. The returned traversal is
+   * shared between calls.
    *
    * @return traversal for lines
    */
   public static Traversal<Text, Text> lines() {
-    final Pattern noLineTerminator = Pattern.compile(".");
-    return groups(c -> !noLineTerminator.matcher(String.valueOf(c)).matches());
+    return LINES;
+  }
+
+  /**
+   * Checks whether the given character terminates a line. These are the characters not matched by
+   * the regular expression "." in {@link java.util.regex.Pattern}.
+   *
+   * @param c character to check
+   * @return true if the character is a line terminator
+   */
+  private static boolean isLineTerminator(final char c) {
+    return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+  }
+
+  /**
+   * Returns a traversal for the matches of a regular expression in text. Matches are found on the
+   * text itself without copying it, and modified matches are written back in one pass.
+   *
+   * @param pattern regular expression
+   * @return traversal for matches
+   */
+  public static Traversal<Text, Text> matches(final Pattern pattern) {
+    return groupsOf(pattern, 0);
+  }
+
+  /**
+   * Returns a traversal for a capturing group of the matches of a regular expression in text.
+   * Matches where the group does not participate are skipped. A single matcher is reused for all
+   * matches of a text and reset afterwards, and modified groups are written back in one pass.
+   *
+   * @param pattern regular expression
+   * @param group index of the capturing group, 0 for entire matches
+   * @return traversal for matched groups
+   */
+  public static Traversal<Text, Text> groupsOf(final Pattern pattern, final int group) {
+    if (group < 0 || group > pattern.matcher("").groupCount()) {
+      throw new IndexOutOfBoundsException("No group " + group + " in " + pattern);
+    }
+    final ThreadLocal<Matcher> matchers = ThreadLocal.withInitial(() -> pattern.matcher(""));
+    return spans(chars -> matchBounds(chars, matchers.get(), group));
+  }
+
+  /**
+   * Computes the bounds of a capturing group in all matches of the given matcher.
+   *
+   * @param chars characters to match
+   * @param matcher matcher to reset and run on the characters
+   * @param group index of the capturing group
+   * @return begin and end offsets of matched groups
+   */
+  private static int[] matchBounds(
+      final CharSequence chars, final Matcher matcher, final int group) {
+    final IntStream.Builder bounds = IntStream.builder();
+    matcher.reset(chars);
+    try {
+      while (matcher.find()) {
+        final int begin = matcher.start(group);
+        if (begin >= 0) {
+          bounds.add(begin).add(matcher.end(group));
+        }
+      }
+    } finally {
+      matcher.reset("");
+    }
+    return bounds.build().toArray();
+  }
+
+  /**
+   * Returns a traversal for occurrences of the given keywords in text. Keywords may contain
+   * whitespace and occur inside words. Overlapping occurrences are resolved leftmost-longest.
+   *
+   * @param keywords non-empty keywords
+   * @return traversal for keyword occurrences
+   * @see Keywords
+   */
+  public static Traversal<Text, Text> occurrences(final Collection<String> keywords) {
+    return occurrences(new Keywords(keywords));
+  }
+
+  /**
+   * Returns a traversal for occurrences of compiled keywords in text. Each text is scanned once and
+   * modified occurrences are written back in one pass. The keywords can be shared by traversals
+   * running on different threads.
+   *
+   * @param keywords compiled keywords
+   * @return traversal for keyword occurrences
+   */
+  public static Traversal<Text, Text> occurrences(final Keywords keywords) {
+    return spans(keywords::find);
+  }
+
+  /** Generator for texts of growing length with words among mixed whitespace. */
+  public static class Gen extends SizedGenerator<Text> {
+    private static final String WHITESPACE = "  \t\n\r";
+    private static final double WHITESPACE_RATIO = 0.2;
+
+    /** Creates a generator for texts with up to 2000 characters. */
+    public Gen() {
+      this(2000);
+    }
+
+    /**
+     * Creates a generator for texts with up to the given length.
+     *
+     * @param maxLength maximum length of texts with unit scale
+     */
+    public Gen(final int maxLength) {
+      super(maxLength);
+    }
+
+    @Override
+    public Text get(final int size) {
+      final Text result = new Text();
+      for (int count = 0; count < size; count++) {
+        if (random.nextDouble() < WHITESPACE_RATIO) {
+          result.append(WHITESPACE.charAt(random.nextInt(WHITESPACE.length())));
+        } else {
+          final char c = (char) ('a' + random.nextInt(26));
+          result.append(random.nextBoolean() ? c : Character.toUpperCase(c));
+        }
+      }
+      return result;
+    }
+
+    @Override
+    public Stream<Text> shrink(final Text text) {
+      return removals(text.length()).map(range -> text.clone().delete(range[0], range[1]));
+    }
   }
 }
@@ -0,0 +1,99 @@
+package sebfisch.text;
+
+import java.io.IOException;
+import sebfisch.util.BinaryReader;
+import sebfisch.util.BinaryWriter;
+
+/**
+ * Replacement of a range of text recorded by {@link Text#recordEdits}. The offset refers to the
+ * text after all previously recorded edits, so edits can be replayed in order on a copy of the
+ * text taken when recording started.
+ */
+public final class TextEdit {
+  private final int offset;
+  private final int length;
+  private final String replacement;
+
+  /**
+   * Creates an edit.
+   *
+   * @param offset index of the first replaced character
+   * @param length number of replaced characters
+   * @param replacement characters replacing the range
+   */
+  public TextEdit(final int offset, final int length, final String replacement) {
+    this.offset = offset;
+    this.length = length;
+    this.replacement = replacement;
+  }
+
+  /**
+   * Provides access to the offset.
+   *
+   * @return index of the first replaced character
+   */
+  public int getOffset() {
+    return offset;
+  }
+
+  /**
+   * Provides access to the length.
+   *
+   * @return number of replaced characters
+   */
+  public int getLength() {
+    return length;
+  }
+
+  /**
+   * Provides access to the replacement.
+   *
+   * @return characters replacing the range
+   */
+  public String getReplacement() {
+    return replacement;
+  }
+
+  /**
+   * Applies this edit to the given text.
+   *
+   * @param text text to edit
+   * @return the given text, mutated
+   */
+  public Text applyTo(final Text text) {
+    return text.replace(offset, offset + length, replacement);
+  }
+
+  /**
+   * Writes this edit: its offset and length followed by the replacement in the format of {@link
+   * Text#writeTo(BinaryWriter)}.
+   *
+   * @param out binary output
+   * @throws IOException if writing fails
+   */
+  public void writeTo(final BinaryWriter out) throws IOException {
+    out.putInt(offset).putInt(length);
+    new Text(replacement).writeTo(out);
+  }
+
+  /**
+   * Reads an edit written with {@link #writeTo(BinaryWriter)}.
+   *
+   * @param in binary input
+   * @return read edit
+   * @throws IOException if reading fails or the input is malformed
+   */
+  public static TextEdit readFrom(final BinaryReader in) throws IOException {
+    final int offset = in.getInt();
+    final int length = in.getInt();
+    if (offset < 0 || length < 0) {
+      throw new IOException("malformed text edit");
+    }
+    return new TextEdit(offset, length, Text.readFrom(in).toString());
+  }
+
+  @Override
+  public String toString() {
+    return "TextEdit(" + offset + "," + length + "," + replacement + ")";
+  }
+}
@@ -0,0 +1,31 @@
+package sebfisch.text;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/** Flight recorder event for a bulk mutation of a text. */
+@Name("sebfisch.text.TextMutation")
+@Label("Text Mutation")
+@Category("Traversals")
+@Description("Bulk mutation of a text")
+@Threshold("10 ms")
+class TextEvent extends Event {
+  @Label("Operation")
+  String operation;
+
+  @Label("Length")
+  @Description("Length of the text after the mutation")
+  int length;
+
+  @Label("Parts")
+  @Description("Number of mutated characters or written back groups")
+  int parts;
+
+  @Label("Characters Copied")
+  @Description("Number of characters moved or copied by the underlying buffer")
+  long copied;
+}
@@ -1,10 +1,42 @@
 package sebfisch.util;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ArgumentsSource;
+import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.NullSource;
+import org.junit.jupiter.params.provider.ValueSource;
 import sebfisch.test.gen.random.RndIntGen;
 
 /**
@@ -36,4 +68,511 @@ public class Tests {
   public void testRootPartsContainRoot(final int root) {
     assertEquals(root, new Traversal.For<Integer>().partsOf(root).findFirst().orElseThrow());
   }
+
+  /** Tests that updates of persistent lists leave the original list unchanged. */
+  @Test
+  public void testPersistentListUpdates() {
+    final List<Integer> numbers = IntStream.range(0, 1000).boxed().collect(Collectors.toList());
+    final PersistentList<Integer> list = PersistentList.copyOf(numbers);
+    assertEquals(numbers, list);
+    assertSame(list, PersistentList.copyOf(list));
+    assertEquals(List.of(), PersistentList.copyOf(List.of()));
+
+    final PersistentList<Integer> updated = list.with(0, -1).with(999, -2).with(500, -3);
+    assertEquals(numbers, list);
+    assertEquals(List.of(-1, 1, 2), updated.subList(0, 3));
+    assertEquals(-3, updated.get(500));
+    assertEquals(-2, updated.get(999));
+    assertThrows(IndexOutOfBoundsException.class, () -> list.get(1000));
+    assertThrows(IndexOutOfBoundsException.class, () -> list.with(-1, 0));
+    assertThrows(UnsupportedOperationException.class, () -> list.set(0, 0));
+  }
+
+  /** Tests that list setters share unchanged lists and elements. */
+  @Test
+  public void testListSetters() {
+    final List<Integer> numbers = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+    final Setter<List<Integer>, Integer> elements = Setter.elements();
+    assertSame(numbers, elements.over(numbers, n -> n));
+    final List<Integer> negated = elements.filter(n -> n % 2 == 0).over(numbers, n -> -n);
+    assertTrue(negated instanceof PersistentList);
+    assertEquals(-98, negated.get(98));
+    assertEquals(99, negated.get(99));
+    assertEquals(98, numbers.get(98));
+
+    assertSame(numbers, Setter.<Integer>elementAt(100).over(numbers, n -> -n));
+    assertSame(numbers, Setter.<Integer>elementAt(-1).over(numbers, n -> -n));
+    assertSame(negated, Setter.<Integer>elementAt(3).over(negated, n -> n));
+    final List<Integer> updated = Setter.<Integer>elementAt(4).over(negated, n -> -n);
+    assertEquals(4, updated.get(4));
+    assertEquals(-4, negated.get(4));
+    assertSame(negated.get(5), updated.get(5));
+  }
+
+  /**
+   * Tests that parts not implementing {@link Versioned} are always written back and reported as
+   * changes.
+   */
+  @Test
+  public void testUnversionedWriteBack() {
+    final Traversal<int[], Integer> first =
+        new Traversal.For<int[]>().map(array -> array[0], (array, n) -> array[0] = n + 1);
+    final int[] root = {0};
+    first.traverse(root, n -> {});
+    assertEquals(1, root[0]);
+    first.traverseAsync(root, n -> CompletableFuture.completedFuture(null)).join();
+    assertEquals(2, root[0]);
+
+    final List<LongIndexed<Integer>> changes = new ArrayList<>();
+    new Traversal.Elements<List<Integer>, Integer>(list -> list)
+        .recordChanges(changes::add)
+        .traverse(List.of(4, 5), n -> {});
+    assertEquals(
+        List.of("0:4", "1:5"),
+        changes.stream()
+            .map(change -> change.getIndex() + ":" + change.getValue())
+            .collect(Collectors.toList()));
+  }
+
+  /**
+   * Tests that instrumenting a traversal with disabled metrics returns the traversal itself, and
+   * that disabled metrics ignore recorded measurements.
+   */
+  @Test
+  public void testDisabledInstrumentation() {
+    final Traversal<Object, Object> traversal = new Traversal.For<>();
+    final TraversalMetrics disabled = TraversalMetrics.disabled();
+    assertSame(traversal, traversal.instrumented("root", disabled));
+    disabled.record("root", 1, 0, 0);
+    assertTrue(!disabled.isEnabled());
+  }
+
+  /**
+   * Tests that instrumented stages are reported as flight recorder events.
+   *
+   * @throws IOException if the recording cannot be dumped
+   */
+  @Test
+  public void testJfrMetrics() throws IOException {
+    final Path dump = Files.createTempFile("traversal", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable("sebfisch.util.TraversalStage");
+      recording.start();
+      new Traversal.For<Integer>().instrumented("root", new JfrMetrics()).traverse(1, i -> {});
+      recording.stop();
+      recording.dump(dump);
+      final List<RecordedEvent> events =
+          RecordingFile.readAllEvents(dump).stream()
+              .filter(e -> e.getEventType().getName().equals("sebfisch.util.TraversalStage"))
+              .collect(Collectors.toList());
+      assertEquals(1, events.size());
+      assertEquals("root", events.get(0).getString("stage"));
+      assertEquals(1, events.get(0).getLong("parts"));
+    } finally {
+      Files.delete(dump);
+    }
+  }
+
+  /**
+   * Tests that flattening variants without intermediate collections agree with {@link
+   * sebfisch.util.Traversal#flatMap}.
+   *
+   * @param size instantiated with small sizes
+   */
+  @ParameterizedTest
+  @ValueSource(ints = {0, 1, 5})
+  public void testFlatMapVariants(final int size) {
+    final List<Integer> expected =
+        new Traversal.For<Integer>()
+            .flatMap(n -> IntStream.range(0, n).boxed().collect(Collectors.toList()))
+            .toList(size);
+    assertEquals(
+        expected,
+        new Traversal.For<Integer>()
+            .<Integer>mapMulti((n, cq) -> IntStream.range(0, n).forEach(cq::accept))
+            .toList(size));
+    assertEquals(
+        expected,
+        new Traversal.For<Integer>()
+            .flatMapIterator(n -> IntStream.range(0, n).iterator())
+            .toList(size));
+    assertEquals(
+        expected,
+        new Traversal.For<Integer>()
+            .flatMapSpliterator(n -> IntStream.range(0, n).boxed().spliterator())
+            .toList(size));
+    assertEquals(
+        expected,
+        new Traversal.For<Integer>()
+            .flatMapStream(n -> IntStream.range(0, n).boxed())
+            .toList(size));
+  }
+
+  /**
+   * Tests flattening a large number of generated parts without collecting them. Each part must
+   * reach the consumer before the next one is generated, so only one part is live at a time.
+   */
+  @Test
+  public void testFlatMapIteratorWithoutCollecting() {
+    final int size = 10_000_000;
+    final long[] generated = {0};
+    final long[] consumed = {0};
+    new Traversal.For<Integer>()
+        .flatMapIterator(n -> IntStream.range(0, n).peek(i -> generated[0]++).iterator())
+        .traverse(
+            size,
+            i -> {
+              assertEquals(consumed[0], (long) i);
+              assertEquals(consumed[0] + 1, generated[0]);
+              consumed[0]++;
+            });
+    assertEquals(size, consumed[0]);
+    assertEquals(size, generated[0]);
+  }
+
+  private static final Traversal.Recursive<Integer> TREE =
+      new Traversal.Recursive<>(n -> n < 3 ? List.of(2 * n + 1, 2 * n + 2) : List.of());
+
+  /** Tests the order in which recursive traversals traverse nodes of a small tree. */
+  @Test
+  public void testRecursiveOrders() {
+    assertEquals(List.of(0, 1, 3, 4, 2, 5, 6), TREE.toList(0));
+    assertEquals(List.of(1, 3, 4, 2, 5, 6), TREE.descendants().toList(0));
+    assertEquals(
+        List.of(3, 4, 1, 5, 6, 2, 0), TREE.inOrder(Traversal.Recursive.Order.POST_ORDER).toList(0));
+    assertEquals(
+        List.of(3, 4, 1, 5, 6, 2),
+        TREE.descendants().inOrder(Traversal.Recursive.Order.POST_ORDER).toList(0));
+    assertEquals(
+        List.of(0, 1, 2, 3, 4, 5, 6),
+        TREE.inOrder(Traversal.Recursive.Order.BREADTH_FIRST).toList(0));
+  }
+
+  /** Tests that recursive traversals of deep structures do not exhaust the call stack. */
+  @ParameterizedTest
+  @EnumSource(Traversal.Recursive.Order.class)
+  public void testDeepRecursion(final Traversal.Recursive.Order order) {
+    final int depth = 1_000_000;
+    final Traversal<Integer, Integer> chain =
+        new Traversal.Recursive<Integer>(n -> n > 0 ? List.of(n - 1) : List.of()).inOrder(order);
+    assertEquals(depth + 1, chain.count(depth));
+  }
+
+  /** Tests that subtrees can be traversed in parallel. */
+  @Test
+  public void testParallelSubtrees() {
+    final Traversal.Recursive<Integer> tree =
+        new Traversal.Recursive<>(n -> n < 100_000 ? List.of(2 * n + 1, 2 * n + 2) : List.of());
+    assertEquals(
+        tree.descendants().toList(0),
+        new Traversal.For<Integer>()
+            .flatMap(n -> List.of(2 * n + 1, 2 * n + 2))
+            .collectParallel(0, tree, Collectors.toList()));
+  }
+
+  /**
+   * Tests that parts are indexed in parallel like sequentially, and that unsized nested traversals
+   * write back their parts only once although they are run for counting first.
+   */
+  @Test
+  public void testParallelIndexing() {
+    final List<Integer> numbers = IntStream.range(0, 1000).boxed().collect(Collectors.toList());
+    final Traversal<List<Integer>, Integer> elements = new Traversal.Elements<>(list -> list);
+    final int[] indexed = new int[numbers.size()];
+    elements.traverseIndexedParallel(numbers, in -> indexed[in.getIndex()] = in.getValue() + 1);
+    assertEquals(
+        numbers.stream().map(n -> n + 1).collect(Collectors.toList()),
+        IntStream.of(indexed).boxed().collect(Collectors.toList()));
+
+    final List<int[]> cells =
+        numbers.stream().map(n -> new int[] {n}).collect(Collectors.toList());
+    final AtomicInteger writeBacks = new AtomicInteger();
+    final int[] even = new int[numbers.size() / 2];
+    new Traversal.Elements<List<int[]>, int[]>(list -> list)
+        .traverseIndexedParallel(
+            cells,
+            new Traversal.For<int[]>()
+                .map(
+                    cell -> cell[0],
+                    (cell, n) -> {
+                      writeBacks.incrementAndGet();
+                      cell[0] = n + 1;
+                    })
+                .filter(n -> n % 2 == 0),
+            in -> even[in.getIndex()] = in.getValue());
+    assertEquals(
+        IntStream.range(0, even.length).map(i -> 2 * i).boxed().collect(Collectors.toList()),
+        IntStream.of(even).boxed().collect(Collectors.toList()));
+    assertEquals(numbers.size(), writeBacks.get());
+    assertEquals(
+        numbers.stream().map(n -> n + 1).collect(Collectors.toList()),
+        cells.stream().map(cell -> cell[0]).collect(Collectors.toList()));
+  }
+
+  /**
+   * Tests that parts are accumulated in parallel in traversal order, also for unsized traversals,
+   * traversals without parts, and traversals writing back parts between buffered segments.
+   */
+  @Test
+  public void testParallelAccumulation() {
+    final List<Integer> numbers = IntStream.range(0, 10_000).boxed().collect(Collectors.toList());
+    final Traversal<List<Integer>, Integer> elements = new Traversal.Elements<>(list -> list);
+    assertEquals(numbers, elements.collectParallel(numbers, Collectors.toList()));
+    assertEquals(
+        numbers, elements.flatMap(List::of).collectParallel(numbers, Collectors.toList()));
+    assertEquals(List.of(), elements.collectParallel(List.of(), Collectors.toList()));
+    assertEquals(
+        numbers.stream().mapToLong(n -> n).sum(),
+        elements.reduceParallel(numbers, 0L, (sum, n) -> sum + n, Long::sum));
+
+    final List<int[]> cells =
+        numbers.stream().map(n -> new int[] {n}).collect(Collectors.toList());
+    assertEquals(
+        numbers,
+        new Traversal.Elements<List<int[]>, int[]>(list -> list)
+            .map(cell -> cell[0], (cell, n) -> cell[0] = n + 1)
+            .collectParallel(cells, Collectors.toList()));
+    assertEquals(1, cells.get(0)[0]);
+  }
+
+  /** Tests that memoized traversals evict the least recently traversed root. */
+  @Test
+  public void testMemoizedEviction() {
+    final Memoized<List<Integer>, Integer> elements =
+        new Traversal.For<List<Integer>>().flatMap(list -> list).memoized(1);
+    final List<Integer> first = List.of(1, 2);
+    final List<Integer> second = List.of(1, 2);
+    assertEquals(first, elements.toList(first));
+    assertEquals(first, elements.toList(first));
+    assertEquals(second, elements.toList(second));
+    assertEquals(first, elements.toList(first));
+    assertEquals(1, elements.getHits());
+    assertEquals(3, elements.getMisses());
+  }
+
+  /** Tests that memoized traversals recompute parts of all roots after invalidating them. */
+  @Test
+  public void testMemoizedInvalidateAll() {
+    final Memoized<List<Integer>, Integer> elements =
+        new Traversal.For<List<Integer>>().flatMap(list -> list).memoized();
+    final List<Integer> first = List.of(1);
+    final List<Integer> second = List.of(2);
+    elements.toList(first);
+    elements.toList(second);
+    elements.invalidateAll();
+    assertEquals(first, elements.toList(first));
+    assertEquals(second, elements.toList(second));
+    assertEquals(0, elements.getHits());
+    assertEquals(4, elements.getMisses());
+    assertEquals(first, elements.toList(first));
+    assertEquals(1, elements.getHits());
+  }
+
+  /**
+   * Tests that memoized traversals do not keep traversed roots reachable, and drop cached parts of
+   * collected roots.
+   *
+   * @throws InterruptedException if interrupted while waiting for the root to be collected
+   */
+  @Test
+  public void testMemoizedRootsAreCollected() throws InterruptedException {
+    final Memoized<List<Integer>, Integer> elements =
+        new Traversal.For<List<Integer>>().flatMap(list -> list).memoized();
+    final ReferenceQueue<List<Integer>> queue = new ReferenceQueue<>();
+    final WeakReference<List<Integer>> probe = traverseUnreachable(elements, queue);
+    for (int attempt = 0; attempt < 100 && queue.poll() == null; attempt++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertNull(probe.get());
+    final List<Integer> root = List.of(1);
+    assertEquals(root, elements.toList(root));
+    assertEquals(0, elements.getHits());
+  }
+
+  private static WeakReference<List<Integer>> traverseUnreachable(
+      final Memoized<List<Integer>, Integer> elements, final ReferenceQueue<List<Integer>> queue) {
+    final List<Integer> root = new ArrayList<>(List.of(1, 2));
+    assertEquals(root, elements.toList(root));
+    return new WeakReference<>(root, queue);
+  }
+
+  /** Tests that cache keys compare roots by identity and never match once a root is collected. */
+  @Test
+  public void testMemoizedKeys() {
+    final List<Integer> root = List.of(1);
+    final Memoized.Key<List<Integer>> key = new Memoized.Key<>(root, null);
+    assertEquals(key, key);
+    assertEquals(key, new Memoized.Key<>(root, null));
+    assertNotEquals(key, new Memoized.Key<>(List.of(1), null));
+    assertNotEquals(key, root);
+    final Memoized.Key<List<Integer>> collected = new Memoized.Key<>(root, null);
+    collected.clear();
+    assertNotEquals(collected, key);
+    assertEquals(collected, collected);
+  }
+
+  /**
+   * Tests that values written in bulk are read back across buffer boundaries even if the channel
+   * returns only few bytes per read.
+   *
+   * @throws IOException if writing or reading fails
+   */
+  @Test
+  public void testBinaryValuesAcrossBufferBoundaries() throws IOException {
+    final int count = 100_000;
+    final double[] doubles = IntStream.range(0, count).mapToDouble(i -> i / 3.0).toArray();
+    final char[] chars = new char[count];
+    for (int index = 0; index < count; index++) {
+      chars[index] = (char) (index * 31);
+    }
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final BinaryWriter out = new BinaryWriter(Channels.newChannel(bytes));
+    out.putByte((byte) 1).putChars(chars, 0, count).putInt(count).putDoubles(doubles, 0, count);
+    out.flush();
+
+    final ReadableByteChannel source =
+        Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray()));
+    final BinaryReader in =
+        new BinaryReader(
+            new ReadableByteChannel() {
+              @Override
+              public int read(final ByteBuffer dst) throws IOException {
+                final ByteBuffer few = dst.slice().limit(Math.min(dst.remaining(), 3));
+                final int read = source.read(few);
+                dst.position(dst.position() + Math.max(0, read));
+                return read;
+              }
+
+              @Override
+              public boolean isOpen() {
+                return source.isOpen();
+              }
+
+              @Override
+              public void close() throws IOException {
+                source.close();
+              }
+            });
+    assertEquals(1, in.getByte());
+    final char[] readChars = new char[count];
+    in.getChars(readChars, 0, count);
+    assertEquals(new String(chars), new String(readChars));
+    assertEquals(count, in.getInt());
+    final double[] readDoubles = new double[count];
+    in.getDoubles(readDoubles, 0, count);
+    assertEquals(
+        IntStream.range(0, count).mapToObj(i -> doubles[i]).collect(Collectors.toList()),
+        IntStream.range(0, count).mapToObj(i -> readDoubles[i]).collect(Collectors.toList()));
+    assertThrows(EOFException.class, in::getByte);
+  }
+
+  /**
+   * Tests that readers know the remaining input of files but not of other channels.
+   *
+   * @throws IOException if accessing the temporary file fails
+   */
+  @Test
+  public void testRemainingBytes() throws IOException {
+    final Path file = Files.createTempFile("values", ".bin");
+    try {
+      Files.write(file, new byte[] {0, 0, 0, 7, 1});
+      try (FileChannel channel = FileChannel.open(file)) {
+        final BinaryReader in = new BinaryReader(channel);
+        assertEquals(5, in.remaining());
+        assertEquals(7, in.getInt());
+        assertEquals(1, in.remaining());
+      }
+    } finally {
+      Files.delete(file);
+    }
+    assertEquals(
+        -1,
+        new BinaryReader(Channels.newChannel(new ByteArrayInputStream(new byte[1]))).remaining());
+  }
+
+  /** Tests that size estimates and characteristics are propagated through combinators. */
+  @Test
+  public void testSizeEstimates() {
+    final List<Integer> root = List.of(1, 2, 3, 4, 5);
+    final Traversal<List<Integer>, Integer> elements = new Traversal.Elements<>(list -> list);
+    assertSized(1, new Traversal.For<List<Integer>>());
+    assertSized(5, elements);
+    assertSized(5, elements.map(n -> n + 1));
+    assertSized(5, elements.indexed());
+    assertSized(2, elements.slice(1, 3));
+    assertSized(1, elements.onlyAt(4));
+    assertSized(5, elements.compose(new Traversal.For<Integer>().map(n -> -n)));
+    assertSized(10, elements.andAlso(elements.map(n -> -n)));
+    assertEquals(5, elements.filter(n -> n > 2).estimateSize(root));
+    assertEquals(3, elements.filter(n -> n > 2).count(root));
+    assertEquals(2, elements.filter(n -> n > 2).slice(0, 2).estimateSize(root));
+    assertEquals(Long.MAX_VALUE, elements.flatMap(List::of).estimateSize(root));
+    assertEquals(
+        Long.MAX_VALUE,
+        new Traversal.For<List<Integer>>().compose(elements).andAlso(elements).estimateSize(root));
+
+    final Traversal<Integer, Integer> integer = new Traversal.For<>();
+    assertTrue((integer.map(n -> n).characteristics() & Spliterator.IMMUTABLE) != 0);
+    assertEquals(0, integer.map(n -> n, (n, m) -> {}).characteristics() & Spliterator.IMMUTABLE);
+
+    final AtomicInteger calls = new AtomicInteger();
+    final Traversal<List<Integer>, Integer> counted = elements.map(n -> calls.incrementAndGet());
+    assertEquals(5, counted.count(root));
+    assertEquals(5, calls.get());
+    final Spliterator<Integer> parts = counted.partsOf(root).spliterator();
+    assertTrue(parts.hasCharacteristics(Spliterator.SIZED | Spliterator.ORDERED));
+    assertEquals(5, parts.getExactSizeIfKnown());
+
+    final MetricsRegistry registry = new MetricsRegistry();
+    final Traversal<List<Integer>, Integer> instrumented = elements.instrumented("list", registry);
+    assertSized(5, instrumented);
+    assertEquals(5, instrumented.count(root));
+    assertEquals(2, registry.stage("list").getRuns());
+    assertEquals(10, registry.stage("list").getParts());
+
+    final Traversal<Integer, Integer> twice =
+        new Traversal.For<>() {
+          @Override
+          public Consumer<Integer> apply(final Consumer<Integer> ci) {
+            return n -> {
+              ci.accept(n);
+              ci.accept(n);
+            };
+          }
+        };
+    assertEquals(Long.MAX_VALUE, elements.compose(twice).estimateSize(root));
+    assertEquals(10, elements.compose(twice).count(root));
+
+    assertEquals(Long.MAX_VALUE, SizedTraversal.product(1L << 32, 1L << 32));
+    assertEquals(Long.MAX_VALUE, SizedTraversal.product(1L << 62, 2));
+    assertEquals(1L << 62, SizedTraversal.product(1L << 31, 1L << 31));
+  }
+
+  /** Tests that long indices agree with integer indices, also when indexing in parallel. */
+  @Test
+  public void testLongIndexed() {
+    final List<Integer> root = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+    final Traversal<List<Integer>, Integer> elements = new Traversal.Elements<>(list -> list);
+    final Traversal<List<Integer>, Integer> odd = elements.filter(n -> n % 2 == 1);
+    assertEquals(
+        odd.indexed().map(Indexed::getIndex).map(Long::valueOf).toList(root),
+        odd.longIndexed().map(LongIndexed::getIndex).toList(root));
+    assertEquals(
+        odd.onlyAt(i -> i % 3 == 0).toList(root), odd.onlyAtLong(i -> i % 3 == 0).toList(root));
+    assertEquals(100, elements.longIndexed().estimateSize(root));
+
+    final long[] parallel = new long[root.size()];
+    elements.traverseLongIndexedParallel(
+        root, in -> parallel[Math.toIntExact(in.getIndex())] = in.getIndex() + in.getValue());
+    assertEquals(
+        elements.longIndexed().map(in -> in.getIndex() + in.getValue()).toList(root),
+        LongStream.of(parallel).boxed().collect(Collectors.toList()));
+  }
+
+  private static void assertSized(final long size, final Traversal<List<Integer>, ?> traversal) {
+    assertEquals(size, traversal.estimateSize(List.of(1, 2, 3, 4, 5)));
+    assertEquals(size, traversal.toList(List.of(1, 2, 3, 4, 5)).size());
+    assertTrue((traversal.characteristics() & Spliterator.SIZED) != 0);
+  }
 }